@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.*;
+import org.openjdk.jmh.annotations.*;
+import org.violetlib.types.Bounds;
+import org.violetlib.types.BoundsIndex;
+
+/**
+  Benchmarks for {@link BoundsIndex} queries over a large set of randomly placed areas.
+*/
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoundsIndexBenchmark
+{
+    @Param({"1000", "100000"})
+    public int count;
+
+    private @NotNull BoundsIndex<Bounds> index = BoundsIndex.create();
+    private final @NotNull Random random = new Random(42);
+    private int extent;
+
+    @Setup
+    public void setup()
+    {
+        extent = (int) Math.sqrt(count) * 100;
+        List<Bounds> bs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            bs.add(Bounds.create(random.nextInt(extent), random.nextInt(extent), random.nextInt(200), random.nextInt(50)));
+        }
+        index = BoundsIndex.create(bs, b -> b);
+    }
+
+    @Benchmark
+    public @NotNull List<Bounds> pick()
+    {
+        return index.getContaining(random.nextInt(extent), random.nextInt(extent));
+    }
+
+    @Benchmark
+    public @NotNull List<Bounds> intersect()
+    {
+        return index.getIntersecting(Bounds.create(random.nextInt(extent), random.nextInt(extent), 400, 300));
+    }
+
+    @Benchmark
+    public @Nullable Bounds nearest()
+    {
+        return index.getNearest(random.nextInt(extent), random.nextInt(extent));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.*;
+import org.openjdk.jmh.annotations.*;
+import org.violetlib.types.ColorDescription;
+
+/**
+  Benchmarks for {@link ColorDescription}.
+*/
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ColorBenchmark
+{
+    private int red = 200;
+    private int green = 100;
+    private int blue = 50;
+    private int alpha = 128;
+    private float intensity = 0.25f;
+    private int argb = 0x80C86432;
+
+    private @NotNull ColorDescription color = ColorDescription.create(200, 100, 50, 128);
+    private @NotNull ColorDescription otherColor = ColorDescription.create(200, 100, 50, 128);
+
+    @Benchmark
+    public @NotNull ColorDescription createRGB()
+    {
+        return ColorDescription.create(red, green, blue);
+    }
+
+    @Benchmark
+    public @NotNull ColorDescription createRGBA()
+    {
+        return ColorDescription.create(red, green, blue, alpha);
+    }
+
+    @Benchmark
+    public @NotNull ColorDescription createGray()
+    {
+        return ColorDescription.gray(red);
+    }
+
+    @Benchmark
+    public @NotNull ColorDescription createFloat()
+    {
+        return ColorDescription.color(intensity, intensity, intensity, intensity);
+    }
+
+    @Benchmark
+    public @NotNull ColorDescription fromArgb()
+    {
+        return ColorDescription.fromArgb(argb);
+    }
+
+    @Benchmark
+    public int toArgb()
+    {
+        return color.toArgb();
+    }
+
+    @Benchmark
+    public boolean colorEquals()
+    {
+        return color.equals(otherColor);
+    }
+
+    @Benchmark
+    public int colorHashCode()
+    {
+        return color.hashCode();
+    }
+
+    @Benchmark
+    public @NotNull String colorToString()
+    {
+        return color.toString();
+    }
+}
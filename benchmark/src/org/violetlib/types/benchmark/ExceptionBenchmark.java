@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.*;
+import org.openjdk.jmh.annotations.*;
+import org.violetlib.types.*;
+
+/**
+  Benchmarks for the exception factory methods. Most of the cost is filling in the stack trace, so these benchmarks
+  primarily guard against regressions in message validation and message construction.
+*/
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExceptionBenchmark
+{
+    private @NotNull String message = "  The operation could not be completed  ";
+    private @NotNull Throwable cause = new IOException("Disk full");
+    private @NotNull IOException ioException = new IOException("Disk full");
+
+    @Benchmark
+    public @NotNull DataException dataException()
+    {
+        return DataException.create(message);
+    }
+
+    @Benchmark
+    public @NotNull DataException dataExceptionWithCause()
+    {
+        return DataException.create(message, cause);
+    }
+
+    @Benchmark
+    public @NotNull DataException dataExceptionFromCause()
+    {
+        return DataException.create(cause);
+    }
+
+    @Benchmark
+    public @NotNull InvalidDataException invalidDataException()
+    {
+        return InvalidDataException.create(message);
+    }
+
+    @Benchmark
+    public @NotNull InvalidDataRuntimeException invalidDataRuntimeException()
+    {
+        return InvalidDataRuntimeException.create(message);
+    }
+
+    @Benchmark
+    public @NotNull OperationFailedException operationFailedException()
+    {
+        return OperationFailedException.create(message);
+    }
+
+    @Benchmark
+    public @NotNull OperationFailedException operationFailedExceptionWithCause()
+    {
+        return OperationFailedException.create(message, cause);
+    }
+
+    @Benchmark
+    public @NotNull OperationFailedRuntimeException operationFailedRuntimeException()
+    {
+        return OperationFailedRuntimeException.create(message);
+    }
+
+    @Benchmark
+    public @NotNull ApplicationException applicationException()
+    {
+        return ApplicationException.create(message);
+    }
+
+    @Benchmark
+    public @NotNull ApplicationRuntimeException applicationRuntimeException()
+    {
+        return ApplicationRuntimeException.create(message);
+    }
+
+    @Benchmark
+    public @NotNull InvalidTextException invalidTextException()
+    {
+        return InvalidTextException.create(message);
+    }
+
+    @Benchmark
+    public @NotNull IORuntimeException ioRuntimeException()
+    {
+        return IORuntimeException.create(ioException);
+    }
+
+    @Benchmark
+    public @NotNull UnsupportedDataException unsupportedDataException()
+    {
+        return UnsupportedDataException.create(message);
+    }
+}
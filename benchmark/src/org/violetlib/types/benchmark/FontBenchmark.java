@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.*;
+import org.openjdk.jmh.annotations.*;
+import org.violetlib.types.FontDescription;
+
+/**
+  Benchmarks for {@link FontDescription}.
+*/
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FontBenchmark
+{
+    private @NotNull String family = "Helvetica Neue";
+    private float weight = FontDescription.SEMI_BOLD;
+    private float size = 13;
+
+    private @NotNull FontDescription font = FontDescription.create("Helvetica Neue", FontDescription.REGULAR, 12);
+    private @NotNull FontDescription otherFont = FontDescription.create("Helvetica Neue", FontDescription.REGULAR, 12);
+
+    private final @NotNull Map<FontDescription,Object> fontMap = new HashMap<>();
+
+    @Setup
+    public void setup()
+    {
+        for (int i = 2; i < 66; i++) {
+            fontMap.put(FontDescription.create(family, FontDescription.REGULAR, i), i);
+        }
+        fontMap.put(font, font);
+    }
+
+    @Benchmark
+    public @NotNull FontDescription create()
+    {
+        return FontDescription.create(family, weight, size);
+    }
+
+    @Benchmark
+    public boolean fontEquals()
+    {
+        return font.equals(otherFont);
+    }
+
+    @Benchmark
+    public int fontHashCode()
+    {
+        return font.hashCode();
+    }
+
+    @Benchmark
+    public @Nullable Object fontMapLookup()
+    {
+        return fontMap.get(otherFont);
+    }
+
+    @Benchmark
+    public @NotNull String fontToString()
+    {
+        return font.toString();
+    }
+
+    @Benchmark
+    public @NotNull FontDescription withWeight()
+    {
+        return font.withWeight(weight);
+    }
+
+    @Benchmark
+    public @NotNull FontDescription withSize()
+    {
+        return font.withSize(size);
+    }
+
+    @Benchmark
+    public @NotNull FontDescription withOblique()
+    {
+        return font.withOblique(true);
+    }
+}
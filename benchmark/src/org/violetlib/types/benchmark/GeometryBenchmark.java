@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.*;
+import org.openjdk.jmh.annotations.*;
+import org.violetlib.types.Bounds;
+import org.violetlib.types.InsetDescription;
+import org.violetlib.types.PackedPosition;
+import org.violetlib.types.PackedSize;
+import org.violetlib.types.Position;
+import org.violetlib.types.Size;
+
+/**
+  Benchmarks for the geometric value types: {@link Bounds}, {@link Size}, {@link Position} and
+  {@link InsetDescription}.
+*/
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeometryBenchmark
+{
+    // Values are read from fields so that the JIT cannot constant fold the benchmarked operations.
+
+    private int x = 10;
+    private int y = 20;
+    private int width = 300;
+    private int height = 200;
+    private int delta = 4;
+
+    private @NotNull Bounds bounds = Bounds.create(10, 20, 300, 200);
+    private @NotNull Bounds otherBounds = Bounds.create(10, 20, 300, 200);
+    private @NotNull Size size = Size.create(300, 200);
+    private @NotNull Size otherSize = Size.create(300, 200);
+    private @NotNull Position position = Position.create(10, 20);
+    private @NotNull Position otherPosition = Position.create(10, 20);
+    private @NotNull InsetDescription insets = InsetDescription.create(1, 2, 3, 4);
+    private @NotNull InsetDescription otherInsets = InsetDescription.create(1, 2, 3, 4);
+
+    private long packedPosition = PackedPosition.pack(10, 20);
+    private long packedSize = PackedSize.pack(300, 200);
+
+    private final @NotNull Map<Bounds,Object> boundsMap = new HashMap<>();
+
+    @Setup
+    public void setup()
+    {
+        for (int i = 0; i < 64; i++) {
+            boundsMap.put(Bounds.create(i, i, width, height), i);
+        }
+        boundsMap.put(bounds, bounds);
+    }
+
+    @Benchmark
+    public @NotNull Bounds boundsCreate()
+    {
+        return Bounds.create(x, y, width, height);
+    }
+
+    @Benchmark
+    public boolean boundsEquals()
+    {
+        return bounds.equals(otherBounds);
+    }
+
+    @Benchmark
+    public int boundsHashCode()
+    {
+        return bounds.hashCode();
+    }
+
+    @Benchmark
+    public @Nullable Object boundsMapLookup()
+    {
+        return boundsMap.get(otherBounds);
+    }
+
+    @Benchmark
+    public @NotNull String boundsToString()
+    {
+        return bounds.toString();
+    }
+
+    @Benchmark
+    public boolean boundsContains()
+    {
+        return bounds.contains(x + delta, y + delta);
+    }
+
+    @Benchmark
+    public @NotNull Bounds boundsEnlarge()
+    {
+        return bounds.enlarge(delta);
+    }
+
+    @Benchmark
+    public @NotNull Bounds boundsOffset()
+    {
+        return bounds.offset(delta, delta);
+    }
+
+    @Benchmark
+    public @NotNull Size sizeCreate()
+    {
+        return Size.create(width, height);
+    }
+
+    @Benchmark
+    public @NotNull Size sizeCreateCanonical()
+    {
+        return Size.create(delta, delta);
+    }
+
+    @Benchmark
+    public boolean sizeEquals()
+    {
+        return size.equals(otherSize);
+    }
+
+    @Benchmark
+    public int sizeHashCode()
+    {
+        return size.hashCode();
+    }
+
+    @Benchmark
+    public @NotNull String sizeToString()
+    {
+        return size.toString();
+    }
+
+    @Benchmark
+    public @NotNull Position positionCreate()
+    {
+        return Position.create(x, y);
+    }
+
+    @Benchmark
+    public @NotNull Position positionCreateCanonical()
+    {
+        return Position.create(delta, -delta);
+    }
+
+    @Benchmark
+    public boolean positionEquals()
+    {
+        return position.equals(otherPosition);
+    }
+
+    @Benchmark
+    public int positionHashCode()
+    {
+        return position.hashCode();
+    }
+
+    @Benchmark
+    public @NotNull String positionToString()
+    {
+        return position.toString();
+    }
+
+    @Benchmark
+    public long packedPositionOffset()
+    {
+        return PackedPosition.offset(packedPosition, delta, delta);
+    }
+
+    @Benchmark
+    public boolean packedSizeContains()
+    {
+        return PackedSize.contains(packedSize, packedPosition);
+    }
+
+    @Benchmark
+    public @NotNull InsetDescription insetsCreate()
+    {
+        return InsetDescription.create(x, y, width, height);
+    }
+
+    @Benchmark
+    public @NotNull InsetDescription insetsCreateUniform()
+    {
+        return InsetDescription.create(delta);
+    }
+
+    @Benchmark
+    public boolean insetsEquals()
+    {
+        return insets.equals(otherInsets);
+    }
+
+    @Benchmark
+    public int insetsHashCode()
+    {
+        return insets.hashCode();
+    }
+
+    @Benchmark
+    public @NotNull String insetsToString()
+    {
+        return insets.toString();
+    }
+
+    @Benchmark
+    public @NotNull InsetDescription insetsAdd()
+    {
+        return insets.add(otherInsets);
+    }
+}
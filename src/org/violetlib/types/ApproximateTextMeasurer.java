@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A text measurer that approximates the metrics of a typical proportional font. Character advances are estimated
+  from character classes, in fractions of the font size, and widened for bold weights.
+*/
+
+final class ApproximateTextMeasurer
+  implements TextMeasurer
+{
+    static final @NotNull ApproximateTextMeasurer INSTANCE = new ApproximateTextMeasurer();
+
+    @Override
+    public float getAdvance(@NotNull FontDescription font, int codePoint)
+    {
+        float weightFactor = 1 + Math.max(0, font.getWeight()) * 0.15f;
+        return font.getSize() * getRelativeAdvance(codePoint) * weightFactor;
+    }
+
+    private static float getRelativeAdvance(int codePoint)
+    {
+        if (codePoint == ' ' || codePoint == '\u00A0') {
+            return 0.25f;
+        }
+        if (codePoint < 0x20 || Character.getType(codePoint) == Character.NON_SPACING_MARK) {
+            return 0;
+        }
+        if ("il.,;:'|!`".indexOf(codePoint) >= 0) {
+            return 0.25f;
+        }
+        if ("fjrt()[]I".indexOf(codePoint) >= 0) {
+            return 0.35f;
+        }
+        if ("mwMW".indexOf(codePoint) >= 0) {
+            return 0.85f;
+        }
+        if (codePoint >= '0' && codePoint <= '9') {
+            return 0.55f;
+        }
+        if (Character.isUpperCase(codePoint)) {
+            return 0.68f;
+        }
+        if (codePoint >= 0x2E80 && Character.isIdeographic(codePoint) || codePoint >= 0xAC00 && codePoint <= 0xD7A3) {
+            return 1;
+        }
+        return 0.52f;
+    }
+
+    @Override
+    public float getAscent(@NotNull FontDescription font)
+    {
+        return font.getSize() * 0.8f;
+    }
+
+    @Override
+    public float getDescent(@NotNull FontDescription font)
+    {
+        return font.getSize() * 0.2f;
+    }
+
+    @Override
+    public float getLeading(@NotNull FontDescription font)
+    {
+        return 0;
+    }
+}
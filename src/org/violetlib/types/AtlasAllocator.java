@@ -0,0 +1,502 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jetbrains.annotations.*;
+
+/**
+  Allocates rectangular areas of a fixed size atlas, such as a texture used to cache glyph or icon rasters.
+  <p>
+  Two strategies are available. The skyline strategy tracks the upper edge of the allocated area and places each
+  allocation as low as possible; it is fast and packs streams of similarly sized items well. The guillotine strategy
+  tracks a list of free rectangles and places each allocation in the free rectangle that fits it most tightly; it
+  adapts better to mixed sizes and to allocations being freed. With both strategies, freed areas are reused.
+  <p>
+  This class is not thread safe.
+*/
+
+public abstract class AtlasAllocator
+{
+    /**
+      Create an allocator that uses the skyline strategy.
+      @param atlasSize The size of the atlas.
+    */
+
+    public static @NotNull AtlasAllocator createSkyline(@NotNull Size atlasSize)
+    {
+        return new SkylineAllocator(atlasSize);
+    }
+
+    /**
+      Create an allocator that uses the guillotine strategy.
+      @param atlasSize The size of the atlas.
+    */
+
+    public static @NotNull AtlasAllocator createGuillotine(@NotNull Size atlasSize)
+    {
+        return new GuillotineAllocator(atlasSize);
+    }
+
+    final @NotNull Size atlasSize;
+    final @NotNull FreeList freeList = new FreeList();
+    private final @NotNull Set<Bounds> allocations = new HashSet<>();
+    private long allocatedArea;
+
+    AtlasAllocator(@NotNull Size atlasSize)
+    {
+        this.atlasSize = atlasSize;
+    }
+
+    public @NotNull Size getAtlasSize()
+    {
+        return atlasSize;
+    }
+
+    /**
+      Allocate an area.
+      @param size The size of the area.
+      @return the allocated area, or null if there is not enough space available.
+      @throws IllegalArgumentException if {@code size} is empty.
+    */
+
+    public @Nullable Bounds allocate(@NotNull Size size)
+      throws IllegalArgumentException
+    {
+        if (size.width == 0 || size.height == 0) {
+            throw new IllegalArgumentException("Invalid allocation size: " + size);
+        }
+
+        if (size.width > atlasSize.width || size.height > atlasSize.height) {
+            return null;
+        }
+
+        Bounds b = freeList.allocate(size.width, size.height);
+        if (b == null) {
+            b = allocateNew(size.width, size.height);
+        }
+        if (b != null) {
+            allocations.add(b);
+            allocatedArea += (long) b.width * b.height;
+        }
+        return b;
+    }
+
+    /**
+      Release a previously allocated area, making it available for reuse.
+      @param b The allocated area.
+      @throws IllegalArgumentException if {@code b} is not a currently allocated area.
+    */
+
+    public void free(@NotNull Bounds b)
+      throws IllegalArgumentException
+    {
+        if (!allocations.remove(b)) {
+            throw new IllegalArgumentException("Not an allocated area: " + b);
+        }
+        allocatedArea -= (long) b.width * b.height;
+        if (allocations.isEmpty()) {
+            // Recover from any fragmentation
+            freeList.clear();
+            reset();
+        } else {
+            freeList.add(b.x, b.y, b.width, b.height);
+        }
+    }
+
+    /**
+      Release all allocated areas.
+    */
+
+    public void clear()
+    {
+        allocations.clear();
+        allocatedArea = 0;
+        freeList.clear();
+        reset();
+    }
+
+    /**
+      Return a report on the use of the atlas.
+    */
+
+    public @NotNull AtlasUsage getUsage()
+    {
+        long available = freeList.getArea() + getUnusedArea();
+        long largest = Math.max(freeList.getLargestArea(), getLargestUnusedArea());
+        return AtlasUsage.create(atlasSize, allocations.size(), allocatedArea, available, largest);
+    }
+
+    /**
+      Allocate an area that is not in the free list.
+      @return the allocated area, or null if there is not enough space available.
+    */
+
+    abstract @Nullable Bounds allocateNew(int width, int height);
+
+    /**
+      Return the area that has never been allocated and is not in the free list.
+    */
+
+    abstract long getUnusedArea();
+
+    /**
+      Return the area of the largest rectangle that has never been allocated and is not in the free list.
+    */
+
+    abstract long getLargestUnusedArea();
+
+    /**
+      Reset the strategy specific state after all allocations have been released.
+    */
+
+    abstract void reset();
+
+    /**
+      A list of free rectangles. An allocation is taken from the free rectangle that fits it most tightly, and the
+      remainder of the free rectangle is split into two free rectangles. Freed rectangles are merged with free
+      rectangles that share a complete edge.
+    */
+
+    static final class FreeList
+    {
+        private final @NotNull BoundsArray rectangles = BoundsArray.create();
+
+        void clear()
+        {
+            rectangles.clear();
+        }
+
+        @Nullable Bounds allocate(int width, int height)
+        {
+            // Choose the free rectangle that minimizes the shorter leftover side
+
+            int best = -1;
+            int bestShortSide = Integer.MAX_VALUE;
+            int bestLongSide = Integer.MAX_VALUE;
+            for (int i = 0; i < rectangles.size(); i++) {
+                int leftoverWidth = rectangles.getWidth(i) - width;
+                int leftoverHeight = rectangles.getHeight(i) - height;
+                if (leftoverWidth >= 0 && leftoverHeight >= 0) {
+                    int shortSide = Math.min(leftoverWidth, leftoverHeight);
+                    int longSide = Math.max(leftoverWidth, leftoverHeight);
+                    if (shortSide < bestShortSide || (shortSide == bestShortSide && longSide < bestLongSide)) {
+                        best = i;
+                        bestShortSide = shortSide;
+                        bestLongSide = longSide;
+                    }
+                }
+            }
+
+            if (best < 0) {
+                return null;
+            }
+
+            int x = rectangles.getX(best);
+            int y = rectangles.getY(best);
+            int freeWidth = rectangles.getWidth(best);
+            int freeHeight = rectangles.getHeight(best);
+            rectangles.remove(best);
+
+            // Split along the shorter leftover axis, so that the larger remainder is as large as possible
+
+            if (freeWidth - width < freeHeight - height) {
+                addIfNotEmpty(x + width, y, freeWidth - width, height);
+                addIfNotEmpty(x, y + height, freeWidth, freeHeight - height);
+            } else {
+                addIfNotEmpty(x + width, y, freeWidth - width, freeHeight);
+                addIfNotEmpty(x, y + height, width, freeHeight - height);
+            }
+            return Bounds.create(x, y, width, height);
+        }
+
+        void add(int x, int y, int width, int height)
+        {
+            rectangles.add(x, y, width, height);
+            mergeFrom(rectangles.size() - 1);
+        }
+
+        private void addIfNotEmpty(int x, int y, int width, int height)
+        {
+            if (width > 0 && height > 0) {
+                rectangles.add(x, y, width, height);
+            }
+        }
+
+        /**
+          Repeatedly merge the specified rectangle with free rectangles that share a complete edge.
+        */
+
+        private void mergeFrom(int index)
+        {
+            boolean merged = true;
+            while (merged) {
+                merged = false;
+                int x = rectangles.getX(index);
+                int y = rectangles.getY(index);
+                int w = rectangles.getWidth(index);
+                int h = rectangles.getHeight(index);
+                for (int i = 0; i < rectangles.size(); i++) {
+                    if (i == index) {
+                        continue;
+                    }
+                    int ox = rectangles.getX(i);
+                    int oy = rectangles.getY(i);
+                    int ow = rectangles.getWidth(i);
+                    int oh = rectangles.getHeight(i);
+                    if (oy == y && oh == h && (ox + ow == x || x + w == ox)) {
+                        rectangles.set(index, Math.min(x, ox), y, w + ow, h);
+                    } else if (ox == x && ow == w && (oy + oh == y || y + h == oy)) {
+                        rectangles.set(index, x, Math.min(y, oy), w, h + oh);
+                    } else {
+                        continue;
+                    }
+                    rectangles.remove(i);
+                    if (i < index) {
+                        index--;
+                    }
+                    merged = true;
+                    break;
+                }
+            }
+        }
+
+        long getArea()
+        {
+            long area = 0;
+            for (int i = 0; i < rectangles.size(); i++) {
+                area += (long) rectangles.getWidth(i) * rectangles.getHeight(i);
+            }
+            return area;
+        }
+
+        long getLargestArea()
+        {
+            long largest = 0;
+            for (int i = 0; i < rectangles.size(); i++) {
+                largest = Math.max(largest, (long) rectangles.getWidth(i) * rectangles.getHeight(i));
+            }
+            return largest;
+        }
+    }
+
+    private static final class GuillotineAllocator
+      extends AtlasAllocator
+    {
+        GuillotineAllocator(@NotNull Size atlasSize)
+        {
+            super(atlasSize);
+            reset();
+        }
+
+        @Override
+        @Nullable Bounds allocateNew(int width, int height)
+        {
+            // All space is managed by the free list
+            return null;
+        }
+
+        @Override
+        long getUnusedArea()
+        {
+            return 0;
+        }
+
+        @Override
+        long getLargestUnusedArea()
+        {
+            return 0;
+        }
+
+        @Override
+        void reset()
+        {
+            if (atlasSize.width > 0 && atlasSize.height > 0) {
+                freeList.add(0, 0, atlasSize.width, atlasSize.height);
+            }
+        }
+    }
+
+    private static final class SkylineAllocator
+      extends AtlasAllocator
+    {
+        // The skyline is a sequence of horizontal segments ordered by X coordinate that together span the width of
+        // the atlas. The area above each segment has never been allocated.
+
+        private @NotNull int[] segmentX = new int[16];
+        private @NotNull int[] segmentY = new int[16];
+        private @NotNull int[] segmentWidth = new int[16];
+        private int segmentCount;
+
+        SkylineAllocator(@NotNull Size atlasSize)
+        {
+            super(atlasSize);
+            reset();
+        }
+
+        @Override
+        @Nullable Bounds allocateNew(int width, int height)
+        {
+            // Choose the position that minimizes the resulting top edge, then the wasted area beneath
+
+            int best = -1;
+            int bestY = 0;
+            int bestTop = Integer.MAX_VALUE;
+            long bestWaste = Long.MAX_VALUE;
+            for (int i = 0; i < segmentCount; i++) {
+                int x = segmentX[i];
+                if (x + width > atlasSize.width) {
+                    break;
+                }
+                int y = 0;
+                long waste = 0;
+                for (int j = i; j < segmentCount && segmentX[j] < x + width; j++) {
+                    y = Math.max(y, segmentY[j]);
+                }
+                int top = y + height;
+                if (top > atlasSize.height) {
+                    continue;
+                }
+                for (int j = i; j < segmentCount && segmentX[j] < x + width; j++) {
+                    int covered = Math.min(segmentX[j] + segmentWidth[j], x + width) - segmentX[j];
+                    waste += (long) covered * (y - segmentY[j]);
+                }
+                if (top < bestTop || (top == bestTop && waste < bestWaste)) {
+                    best = i;
+                    bestY = y;
+                    bestTop = top;
+                    bestWaste = waste;
+                }
+            }
+
+            if (best < 0) {
+                return null;
+            }
+
+            int x = segmentX[best];
+            place(best, x, bestY, width, height);
+            return Bounds.create(x, bestY, width, height);
+        }
+
+        /**
+          Raise the skyline to include a new allocation. Space between the old skyline and the allocation is given to
+          the free list so that it can be reused.
+        */
+
+        private void place(int first, int x, int y, int width, int height)
+        {
+            int end = x + width;
+            int last = first;
+            while (last < segmentCount && segmentX[last] < end) {
+                int segmentEnd = segmentX[last] + segmentWidth[last];
+                int covered = Math.min(segmentEnd, end) - segmentX[last];
+                if (segmentY[last] < y) {
+                    freeList.add(segmentX[last], segmentY[last], covered, y - segmentY[last]);
+                }
+                last++;
+            }
+
+            // Segments first through last - 1 are covered, the last of them possibly only in part
+
+            int lastEnd = segmentX[last - 1] + segmentWidth[last - 1];
+            int lastY = segmentY[last - 1];
+            int removed = last - first;
+            if (lastEnd > end) {
+                // Keep the uncovered part of the last covered segment
+                if (removed == 1) {
+                    insert(first);
+                } else {
+                    remove(first, removed - 2);
+                }
+                segmentX[first + 1] = end;
+                segmentY[first + 1] = lastY;
+                segmentWidth[first + 1] = lastEnd - end;
+            } else {
+                remove(first, removed - 1);
+            }
+            segmentX[first] = x;
+            segmentY[first] = y + height;
+            segmentWidth[first] = width;
+
+            // Merge with neighbors at the same height
+
+            if (first + 1 < segmentCount && segmentY[first + 1] == segmentY[first]) {
+                segmentWidth[first] += segmentWidth[first + 1];
+                remove(first + 1, 1);
+            }
+            if (first > 0 && segmentY[first - 1] == segmentY[first]) {
+                segmentWidth[first - 1] += segmentWidth[first];
+                remove(first, 1);
+            }
+        }
+
+        private void insert(int index)
+        {
+            if (segmentCount == segmentX.length) {
+                int capacity = segmentCount * 2;
+                segmentX = Arrays.copyOf(segmentX, capacity);
+                segmentY = Arrays.copyOf(segmentY, capacity);
+                segmentWidth = Arrays.copyOf(segmentWidth, capacity);
+            }
+            int moved = segmentCount - index;
+            System.arraycopy(segmentX, index, segmentX, index + 1, moved);
+            System.arraycopy(segmentY, index, segmentY, index + 1, moved);
+            System.arraycopy(segmentWidth, index, segmentWidth, index + 1, moved);
+            segmentCount++;
+        }
+
+        private void remove(int index, int count)
+        {
+            int moved = segmentCount - index - count;
+            System.arraycopy(segmentX, index + count, segmentX, index, moved);
+            System.arraycopy(segmentY, index + count, segmentY, index, moved);
+            System.arraycopy(segmentWidth, index + count, segmentWidth, index, moved);
+            segmentCount -= count;
+        }
+
+        @Override
+        long getUnusedArea()
+        {
+            long area = 0;
+            for (int i = 0; i < segmentCount; i++) {
+                area += (long) segmentWidth[i] * (atlasSize.height - segmentY[i]);
+            }
+            return area;
+        }
+
+        @Override
+        long getLargestUnusedArea()
+        {
+            // The largest rectangle above the skyline, which spans one or more adjacent segments
+
+            long largest = 0;
+            for (int i = 0; i < segmentCount; i++) {
+                int y = 0;
+                for (int j = i; j < segmentCount; j++) {
+                    y = Math.max(y, segmentY[j]);
+                    long width = (long) segmentX[j] + segmentWidth[j] - segmentX[i];
+                    largest = Math.max(largest, width * (atlasSize.height - y));
+                }
+            }
+            return largest;
+        }
+
+        @Override
+        void reset()
+        {
+            segmentX[0] = 0;
+            segmentY[0] = 0;
+            segmentWidth[0] = atlasSize.width;
+            segmentCount = 1;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+import org.violetlib.annotations.Value;
+
+/**
+  A report on the use of the space in an atlas managed by an {@link AtlasAllocator}. Areas are in pixels.
+*/
+
+public final @Immutable @Value class AtlasUsage
+{
+    public static @NotNull AtlasUsage create(@NotNull Size atlasSize,
+                                             int allocationCount,
+                                             long allocatedArea,
+                                             long availableArea,
+                                             long largestAvailableArea)
+    {
+        return new AtlasUsage(atlasSize, allocationCount, allocatedArea, availableArea, largestAvailableArea);
+    }
+
+    private final @NotNull Size atlasSize;
+    private final int allocationCount;
+    private final long allocatedArea;
+    private final long availableArea;
+    private final long largestAvailableArea;
+
+    private AtlasUsage(@NotNull Size atlasSize,
+                       int allocationCount,
+                       long allocatedArea,
+                       long availableArea,
+                       long largestAvailableArea)
+    {
+        this.atlasSize = atlasSize;
+        this.allocationCount = allocationCount;
+        this.allocatedArea = allocatedArea;
+        this.availableArea = availableArea;
+        this.largestAvailableArea = largestAvailableArea;
+    }
+
+    public @NotNull Size getAtlasSize()
+    {
+        return atlasSize;
+    }
+
+    public int getAllocationCount()
+    {
+        return allocationCount;
+    }
+
+    public long getAllocatedArea()
+    {
+        return allocatedArea;
+    }
+
+    /**
+      Return the area that is available for future allocations.
+    */
+
+    public long getAvailableArea()
+    {
+        return availableArea;
+    }
+
+    /**
+      Return the area of the largest rectangle that is available for a future allocation.
+    */
+
+    public long getLargestAvailableArea()
+    {
+        return largestAvailableArea;
+    }
+
+    /**
+      Return the area that is neither allocated nor available for future allocations.
+    */
+
+    public long getWastedArea()
+    {
+        return (long) atlasSize.width * atlasSize.height - allocatedArea - availableArea;
+    }
+
+    /**
+      Return the fraction of the allocated area relative to the area of the atlas.
+    */
+
+    public double getOccupancy()
+    {
+        long area = (long) atlasSize.width * atlasSize.height;
+        return area > 0 ? (double) allocatedArea / area : 0;
+    }
+
+    /**
+      Return a measure of the fragmentation of the available area: zero if the available area is a single rectangle,
+      approaching one as the available area is divided into many small rectangles. A high value suggests that
+      repacking the atlas would allow larger allocations to succeed.
+    */
+
+    public double getFragmentation()
+    {
+        return availableArea > 0 ? 1 - (double) largestAvailableArea / availableArea : 0;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof AtlasUsage)) return false;
+        AtlasUsage that = (AtlasUsage) o;
+        return allocationCount == that.allocationCount
+          && allocatedArea == that.allocatedArea
+          && availableArea == that.availableArea
+          && largestAvailableArea == that.largestAvailableArea
+          && atlasSize.equals(that.atlasSize);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = atlasSize.hashCode();
+        result = 31 * result + allocationCount;
+        result = 31 * result + Long.hashCode(allocatedArea);
+        result = 31 * result + Long.hashCode(availableArea);
+        result = 31 * result + Long.hashCode(largestAvailableArea);
+        return result;
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        return "AtlasUsage{" +
+                 "atlasSize=" + atlasSize +
+                 ", allocationCount=" + allocationCount +
+                 ", allocatedArea=" + allocatedArea +
+                 ", availableArea=" + availableArea +
+                 ", largestAvailableArea=" + largestAvailableArea +
+                 '}';
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  Options for combining a source color with a destination color, for use with {@link Compositor}.
+  <p>
+  The Porter-Duff operators describe how the coverage (alpha) of the source and destination are combined. The blend
+  modes combine the source and destination colors using a blend function, then composite the result over the
+  destination as in {@link #SRC_OVER}; they follow the W3C Compositing and Blending specification.
+*/
+
+public final @Immutable class BlendMode
+{
+    /** Neither source nor destination is retained. */
+    public static final @NotNull BlendMode CLEAR = new BlendMode("Clear", 0);
+    /** The source replaces the destination. */
+    public static final @NotNull BlendMode SRC = new BlendMode("Source", 1);
+    /** The destination is retained. */
+    public static final @NotNull BlendMode DST = new BlendMode("Destination", 2);
+    /** The source is placed over the destination. This is the usual mode for painting. */
+    public static final @NotNull BlendMode SRC_OVER = new BlendMode("Source Over", 3);
+    /** The destination is placed over the source. */
+    public static final @NotNull BlendMode DST_OVER = new BlendMode("Destination Over", 4);
+    /** The part of the source inside the destination replaces the destination. */
+    public static final @NotNull BlendMode SRC_IN = new BlendMode("Source In", 5);
+    /** The part of the destination inside the source is retained. */
+    public static final @NotNull BlendMode DST_IN = new BlendMode("Destination In", 6);
+    /** The part of the source outside the destination replaces the destination. */
+    public static final @NotNull BlendMode SRC_OUT = new BlendMode("Source Out", 7);
+    /** The part of the destination outside the source is retained. */
+    public static final @NotNull BlendMode DST_OUT = new BlendMode("Destination Out", 8);
+    /** The part of the source inside the destination is placed over the destination. */
+    public static final @NotNull BlendMode SRC_ATOP = new BlendMode("Source Atop", 9);
+    /** The part of the destination inside the source is placed over the source. */
+    public static final @NotNull BlendMode DST_ATOP = new BlendMode("Destination Atop", 10);
+    /** The parts of the source and destination outside each other are retained. */
+    public static final @NotNull BlendMode XOR = new BlendMode("Xor", 11);
+    /** The source and destination are added, with saturation. */
+    public static final @NotNull BlendMode PLUS = new BlendMode("Plus", 12);
+
+    /** The source and destination colors are multiplied. */
+    public static final @NotNull BlendMode MULTIPLY = new BlendMode("Multiply", 13);
+    /** The complements of the source and destination colors are multiplied. */
+    public static final @NotNull BlendMode SCREEN = new BlendMode("Screen", 14);
+    /** Multiply or screen, depending on the destination color. */
+    public static final @NotNull BlendMode OVERLAY = new BlendMode("Overlay", 15);
+    /** The darker of the source and destination colors. */
+    public static final @NotNull BlendMode DARKEN = new BlendMode("Darken", 16);
+    /** The lighter of the source and destination colors. */
+    public static final @NotNull BlendMode LIGHTEN = new BlendMode("Lighten", 17);
+    /** The absolute difference of the source and destination colors. */
+    public static final @NotNull BlendMode DIFFERENCE = new BlendMode("Difference", 18);
+
+    static final int FIRST_BLEND = 13;
+
+    private final @NotNull String name;
+    final int code;
+
+    private BlendMode(@NotNull String name, int code)
+    {
+        this.name = name;
+        this.code = code;
+    }
+
+    /**
+      Return true if and only if this mode uses a blend function, as opposed to being a Porter-Duff operator.
+    */
+
+    public boolean isBlend()
+    {
+        return code >= FIRST_BLEND;
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        return name;
+    }
+}
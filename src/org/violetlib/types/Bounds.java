@@ -12,8 +12,6 @@ import org.jetbrains.annotations.*;
 import org.violetlib.annotations.Immutable;
 import org.violetlib.annotations.Value;
 
-import java.util.Objects;
-
 /**
   A platform-independent description of a rectangular area.
 */
@@ -63,7 +61,11 @@ public final @Immutable @Value class Bounds
     @Override
     public int hashCode()
     {
-        return Objects.hash(x, y, width, height);
+        int result = x;
+        result = 31 * result + y;
+        result = 31 * result + width;
+        result = 31 * result + height;
+        return result;
     }
 
     public @NotNull Bounds enlarge(int delta)
@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A growable list of rectangular areas stored as primitive values. Each element is stored as four consecutive
+  integers (x, y, width, height), so that large collections do not require a {@link Bounds} object per element.
+  This class is not thread safe.
+*/
+
+public final class BoundsArray
+{
+    /**
+      An operation that accepts the components of an element.
+    */
+
+    public interface Visitor
+    {
+        void visit(int index, int x, int y, int width, int height);
+    }
+
+    public static @NotNull BoundsArray create()
+    {
+        return new BoundsArray(10);
+    }
+
+    /**
+      Create an empty list.
+      @param initialCapacity The number of elements that can be added without growing the storage.
+      @throws IllegalArgumentException if {@code initialCapacity} is negative.
+    */
+
+    public static @NotNull BoundsArray create(int initialCapacity)
+      throws IllegalArgumentException
+    {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + initialCapacity);
+        }
+        return new BoundsArray(initialCapacity);
+    }
+
+    private static final int STRIDE = 4;
+
+    private @NotNull int[] data;
+    private int count;
+
+    private BoundsArray(int initialCapacity)
+    {
+        this.data = new int[initialCapacity * STRIDE];
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    public boolean isEmpty()
+    {
+        return count == 0;
+    }
+
+    public void clear()
+    {
+        count = 0;
+    }
+
+    /**
+      Ensure that the specified number of elements can be stored without growing the storage.
+    */
+
+    public void ensureCapacity(int capacity)
+    {
+        if (capacity * STRIDE > data.length) {
+            data = Arrays.copyOf(data, IndexSort.grow(data.length / STRIDE, capacity) * STRIDE);
+        }
+    }
+
+    /**
+      Add an element.
+      @throws IllegalArgumentException if {@code width} or {@code height} is negative.
+    */
+
+    public void add(int x, int y, int width, int height)
+      throws IllegalArgumentException
+    {
+        validate(width, height);
+        ensureCapacity(count + 1);
+        int base = count * STRIDE;
+        data[base] = x;
+        data[base + 1] = y;
+        data[base + 2] = width;
+        data[base + 3] = height;
+        count++;
+    }
+
+    public void add(@NotNull Bounds b)
+    {
+        add(b.x, b.y, b.width, b.height);
+    }
+
+    public void addAll(@NotNull Iterable<Bounds> bs)
+    {
+        for (Bounds b : bs) {
+            add(b);
+        }
+    }
+
+    public void addAll(@NotNull BoundsArray a)
+    {
+        ensureCapacity(count + a.count);
+        System.arraycopy(a.data, 0, data, count * STRIDE, a.count * STRIDE);
+        count += a.count;
+    }
+
+    /**
+      Replace an element.
+      @throws IndexOutOfBoundsException if {@code index} is not valid.
+      @throws IllegalArgumentException if {@code width} or {@code height} is negative.
+    */
+
+    public void set(int index, int x, int y, int width, int height)
+      throws IndexOutOfBoundsException, IllegalArgumentException
+    {
+        int base = base(index);
+        validate(width, height);
+        data[base] = x;
+        data[base + 1] = y;
+        data[base + 2] = width;
+        data[base + 3] = height;
+    }
+
+    public void set(int index, @NotNull Bounds b)
+      throws IndexOutOfBoundsException
+    {
+        set(index, b.x, b.y, b.width, b.height);
+    }
+
+    /**
+      Remove an element. Subsequent elements are shifted down.
+      @throws IndexOutOfBoundsException if {@code index} is not valid.
+    */
+
+    public void remove(int index)
+      throws IndexOutOfBoundsException
+    {
+        int base = base(index);
+        System.arraycopy(data, base + STRIDE, data, base, (count - index - 1) * STRIDE);
+        count--;
+    }
+
+    public @NotNull Bounds get(int index)
+      throws IndexOutOfBoundsException
+    {
+        int base = base(index);
+        return Bounds.create(data[base], data[base + 1], data[base + 2], data[base + 3]);
+    }
+
+    public int getX(int index)
+      throws IndexOutOfBoundsException
+    {
+        return data[base(index)];
+    }
+
+    public int getY(int index)
+      throws IndexOutOfBoundsException
+    {
+        return data[base(index) + 1];
+    }
+
+    public int getWidth(int index)
+      throws IndexOutOfBoundsException
+    {
+        return data[base(index) + 2];
+    }
+
+    public int getHeight(int index)
+      throws IndexOutOfBoundsException
+    {
+        return data[base(index) + 3];
+    }
+
+    /**
+      Determine whether an element contains a point, using the same definition as {@link Bounds#contains}.
+    */
+
+    public boolean contains(int index, int px, int py)
+      throws IndexOutOfBoundsException
+    {
+        int base = base(index);
+        int x = data[base];
+        int y = data[base + 1];
+        return px >= x && px <= x + data[base + 2] && py >= y && py <= y + data[base + 3];
+    }
+
+    /**
+      Move an element.
+    */
+
+    public void offset(int index, int xOffset, int yOffset)
+      throws IndexOutOfBoundsException
+    {
+        int base = base(index);
+        data[base] += xOffset;
+        data[base + 1] += yOffset;
+    }
+
+    /**
+      Move all elements.
+    */
+
+    public void offsetAll(int xOffset, int yOffset)
+    {
+        int limit = count * STRIDE;
+        for (int base = 0; base < limit; base += STRIDE) {
+            data[base] += xOffset;
+            data[base + 1] += yOffset;
+        }
+    }
+
+    /**
+      Enlarge an element by the specified amount on each side, as in {@link Bounds#enlarge}.
+      @throws IllegalArgumentException if {@code delta} is negative.
+    */
+
+    public void enlarge(int index, int delta)
+      throws IndexOutOfBoundsException, IllegalArgumentException
+    {
+        int base = base(index);
+        validateEnlargement(delta);
+        enlargeAt(base, delta);
+    }
+
+    /**
+      Enlarge all elements by the specified amount on each side, as in {@link Bounds#enlarge}.
+      @throws IllegalArgumentException if {@code delta} is negative.
+    */
+
+    public void enlargeAll(int delta)
+      throws IllegalArgumentException
+    {
+        validateEnlargement(delta);
+        int limit = count * STRIDE;
+        for (int base = 0; base < limit; base += STRIDE) {
+            enlargeAt(base, delta);
+        }
+    }
+
+    /**
+      Visit the elements in order.
+    */
+
+    public void forEach(@NotNull Visitor v)
+    {
+        for (int i = 0; i < count; i++) {
+            int base = i * STRIDE;
+            v.visit(i, data[base], data[base + 1], data[base + 2], data[base + 3]);
+        }
+    }
+
+    /**
+      Sort the elements. The sort is stable.
+      @param c The comparator, which is called with the indexes of elements in their order prior to sorting. The
+      comparator may use the accessors of this list to obtain the components of the elements.
+    */
+
+    public void sort(@NotNull IndexComparator c)
+    {
+        data = IndexSort.sort(data, count, STRIDE, c);
+    }
+
+    /**
+      Sort the elements in reading order: by Y coordinate, then by X coordinate.
+    */
+
+    public void sortByPosition()
+    {
+        int[] d = data;
+        sort((i, j) -> {
+            int result = Integer.compare(d[i * STRIDE + 1], d[j * STRIDE + 1]);
+            return result != 0 ? result : Integer.compare(d[i * STRIDE], d[j * STRIDE]);
+        });
+    }
+
+    public @NotNull List<Bounds> toList()
+    {
+        List<Bounds> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(get(i));
+        }
+        return result;
+    }
+
+    /**
+      Release unused storage.
+    */
+
+    public void trimToSize()
+    {
+        if (data.length > count * STRIDE) {
+            data = Arrays.copyOf(data, count * STRIDE);
+        }
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            int base = i * STRIDE;
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(data[base]).append(' ').append(data[base + 1]).append(' ');
+            sb.append(data[base + 2]).append('x').append(data[base + 3]);
+        }
+        return sb.append(']').toString();
+    }
+
+    private void enlargeAt(int base, int delta)
+    {
+        data[base] -= delta;
+        data[base + 1] -= delta;
+        data[base + 2] += 2 * delta;
+        data[base + 3] += 2 * delta;
+    }
+
+    private int base(int index)
+      throws IndexOutOfBoundsException
+    {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        }
+        return index * STRIDE;
+    }
+
+    private static void validate(int width, int height)
+      throws IllegalArgumentException
+    {
+        if (width < 0) {
+            throw new IllegalArgumentException("Invalid width: " + width);
+        }
+
+        if (height < 0) {
+            throw new IllegalArgumentException("Invalid height: " + height);
+        }
+    }
+
+    private static void validateEnlargement(int delta)
+      throws IllegalArgumentException
+    {
+        if (delta < 0) {
+            throw new IllegalArgumentException("Bounds enlargement must not be negative");
+        }
+    }
+}
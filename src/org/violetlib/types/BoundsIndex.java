@@ -0,0 +1,569 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A spatial index (an R-tree) of values associated with rectangular areas. The index supports queries for the values
+  whose areas contain a point, the values whose areas intersect a rectangle, and the values whose areas are nearest
+  to a point. As in {@link Bounds#contains}, the edges of an area are considered part of the area.
+  <p>
+  This class is not thread safe. Concurrent queries are permitted if there are no concurrent modifications.
+*/
+
+public final class BoundsIndex<T>
+{
+    /**
+      Create an empty index.
+    */
+
+    public static <T> @NotNull BoundsIndex<T> create()
+    {
+        return new BoundsIndex<>();
+    }
+
+    /**
+      Create an index containing the specified values. The index is built in bulk, which is faster and produces a
+      better organized index than adding the values individually.
+
+      @param values The values.
+      @param boundsFunction A function that returns the area associated with a value.
+    */
+
+    public static <T> @NotNull BoundsIndex<T> create(@NotNull List<T> values,
+                                                     @NotNull Function<? super T, Bounds> boundsFunction)
+    {
+        BoundsIndex<T> index = new BoundsIndex<>();
+        int count = values.size();
+        if (count > 0) {
+            Node leaves = new Node(true, count);
+            for (T value : values) {
+                leaves.add(toBox(boundsFunction.apply(value)), 0, value);
+            }
+            index.root = bulkLoad(leaves);
+            index.size = count;
+        }
+        return index;
+    }
+
+    private static final int MAX_ENTRIES = 16;
+    private static final int MIN_ENTRIES = 6;
+
+    private @NotNull Node root;
+    private int size;
+
+    private BoundsIndex()
+    {
+        this.root = new Node(true, MAX_ENTRIES + 1);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public void clear()
+    {
+        root = new Node(true, MAX_ENTRIES + 1);
+        size = 0;
+    }
+
+    /**
+      Add a value to the index.
+      @param b The area associated with the value.
+      @param value The value.
+    */
+
+    public void add(@NotNull Bounds b, @NotNull T value)
+    {
+        insert(toBox(b), 0, value, 0);
+        size++;
+    }
+
+    /**
+      Remove a value from the index.
+      @param b The area associated with the value when it was added.
+      @param value The value.
+      @return true if the value was found and removed, false otherwise.
+    */
+
+    public boolean remove(@NotNull Bounds b, @NotNull T value)
+    {
+        int[] box = toBox(b);
+        List<Node> orphans = new ArrayList<>();
+        if (!remove(root, box, value, orphans)) {
+            return false;
+        }
+        size--;
+
+        if (!root.isLeaf && root.count == 1) {
+            root = (Node) root.children[0];
+        }
+
+        // Reinsert the entries of nodes that were removed because they had too few entries
+
+        for (Node orphan : orphans) {
+            for (int i = 0; i < orphan.count; i++) {
+                insert(orphan.boxes, i * 4, orphan.children[i], orphan.level);
+            }
+        }
+        return true;
+    }
+
+    /**
+      Visit the values whose areas contain the specified point.
+    */
+
+    public void findContaining(int px, int py, @NotNull Consumer<? super T> consumer)
+    {
+        if (size > 0) {
+            findIntersecting(root, px, py, px, py, consumer);
+        }
+    }
+
+    /**
+      Return the values whose areas contain the specified point.
+    */
+
+    public @NotNull List<T> getContaining(int px, int py)
+    {
+        List<T> result = new ArrayList<>();
+        findContaining(px, py, result::add);
+        return result;
+    }
+
+    /**
+      Visit the values whose areas intersect the specified area.
+    */
+
+    public void findIntersecting(@NotNull Bounds b, @NotNull Consumer<? super T> consumer)
+    {
+        if (size > 0) {
+            findIntersecting(root, b.x, b.y, b.x + b.width, b.y + b.height, consumer);
+        }
+    }
+
+    /**
+      Return the values whose areas intersect the specified area.
+    */
+
+    public @NotNull List<T> getIntersecting(@NotNull Bounds b)
+    {
+        List<T> result = new ArrayList<>();
+        findIntersecting(b, result::add);
+        return result;
+    }
+
+    /**
+      Return the value whose area is nearest to the specified point. A point contained in an area has distance zero.
+      @return the nearest value, or null if the index is empty.
+    */
+
+    public @Nullable T getNearest(int px, int py)
+    {
+        List<T> result = getNearest(px, py, 1);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+      Return the values whose areas are nearest to the specified point, nearest first. A point contained in an area
+      has distance zero.
+      @param px The X coordinate of the point.
+      @param py The Y coordinate of the point.
+      @param count The maximum number of values to return.
+      @return the nearest values.
+    */
+
+    public @NotNull List<T> getNearest(int px, int py, int count)
+    {
+        List<T> result = new ArrayList<>(Math.min(count, size));
+        if (size == 0 || count <= 0) {
+            return result;
+        }
+
+        // Best first search: nodes and values are visited in order of increasing distance
+
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        queue.add(new Candidate(root, 0));
+        while (!queue.isEmpty()) {
+            Candidate c = queue.remove();
+            if (!c.isValue) {
+                Node n = (Node) c.item;
+                for (int i = 0; i < n.count; i++) {
+                    queue.add(new Candidate(n.children[i], distanceSquared(n.boxes, i * 4, px, py), n.isLeaf));
+                }
+            } else {
+                @SuppressWarnings("unchecked")
+                T value = (T) c.item;
+                result.add(value);
+                if (result.size() == count) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private void insert(@NotNull int[] boxes, int offset, @NotNull Object item, int level)
+    {
+        Node sibling = insert(root, boxes, offset, item, level);
+        if (sibling != null) {
+            Node newRoot = new Node(false, MAX_ENTRIES + 1);
+            newRoot.level = root.level + 1;
+            newRoot.add(root.computeBox(), 0, root);
+            newRoot.add(sibling.computeBox(), 0, sibling);
+            root = newRoot;
+        }
+    }
+
+    /**
+      Insert an item into the subtree rooted at the specified node.
+      @param level The level of the nodes that should contain the item: zero for values, higher for nodes.
+      @return the new sibling node, if the node was split, otherwise null.
+    */
+
+    private @Nullable Node insert(@NotNull Node n, @NotNull int[] boxes, int offset, @NotNull Object item, int level)
+    {
+        if (n.level == level) {
+            n.add(boxes, offset, item);
+        } else {
+            int i = n.chooseSubtree(boxes, offset);
+            Node child = (Node) n.children[i];
+            Node sibling = insert(child, boxes, offset, item, level);
+            n.setBox(i, child.computeBox());
+            if (sibling != null) {
+                n.add(sibling.computeBox(), 0, sibling);
+            }
+        }
+        return n.count > MAX_ENTRIES ? n.split() : null;
+    }
+
+    private boolean remove(@NotNull Node n, @NotNull int[] box, @NotNull Object value, @NotNull List<Node> orphans)
+    {
+        for (int i = 0; i < n.count; i++) {
+            if (n.isLeaf) {
+                if (n.isSameBox(i, box) && value.equals(n.children[i])) {
+                    n.remove(i);
+                    return true;
+                }
+            } else if (n.containsBox(i, box)) {
+                Node child = (Node) n.children[i];
+                if (remove(child, box, value, orphans)) {
+                    if (child.count < MIN_ENTRIES) {
+                        n.remove(i);
+                        if (child.count > 0) {
+                            orphans.add(child);
+                        }
+                    } else {
+                        n.setBox(i, child.computeBox());
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void findIntersecting(@NotNull Node n, int x1, int y1, int x2, int y2,
+                                  @NotNull Consumer<? super T> consumer)
+    {
+        int[] boxes = n.boxes;
+        for (int i = 0; i < n.count; i++) {
+            int base = i * 4;
+            if (boxes[base] <= x2 && x1 <= boxes[base + 2] && boxes[base + 1] <= y2 && y1 <= boxes[base + 3]) {
+                if (n.isLeaf) {
+                    @SuppressWarnings("unchecked")
+                    T value = (T) n.children[i];
+                    consumer.accept(value);
+                } else {
+                    findIntersecting((Node) n.children[i], x1, y1, x2, y2, consumer);
+                }
+            }
+        }
+    }
+
+    /**
+      Build the upper levels of a tree using the Sort-Tile-Recursive algorithm.
+      @param entries A node (possibly oversized) containing the entries of the level being built.
+      @return the root of the tree.
+    */
+
+    private static @NotNull Node bulkLoad(@NotNull Node entries)
+    {
+        int count = entries.count;
+        if (count <= MAX_ENTRIES) {
+            Node n = new Node(entries.isLeaf, MAX_ENTRIES + 1);
+            n.level = entries.level;
+            for (int i = 0; i < count; i++) {
+                n.add(entries.boxes, i * 4, entries.children[i]);
+            }
+            return n;
+        }
+
+        int nodeCount = (count + MAX_ENTRIES - 1) / MAX_ENTRIES;
+        int sliceCount = (int) Math.ceil(Math.sqrt(nodeCount));
+        int sliceSize = sliceCount * MAX_ENTRIES;
+
+        int[] order = entries.sortedByCenter(0, count, 0);
+        Node parents = new Node(false, nodeCount);
+        parents.level = entries.level + 1;
+        for (int sliceStart = 0; sliceStart < count; sliceStart += sliceSize) {
+            int sliceEnd = Math.min(sliceStart + sliceSize, count);
+            int[] slice = Arrays.copyOfRange(order, sliceStart, sliceEnd);
+            slice = entries.sortIndexesByCenter(slice, 1);
+            for (int start = 0; start < slice.length; start += MAX_ENTRIES) {
+                int end = Math.min(start + MAX_ENTRIES, slice.length);
+                Node n = new Node(entries.isLeaf, MAX_ENTRIES + 1);
+                n.level = entries.level;
+                for (int k = start; k < end; k++) {
+                    int i = slice[k];
+                    n.add(entries.boxes, i * 4, entries.children[i]);
+                }
+                parents.add(n.computeBox(), 0, n);
+            }
+        }
+        return bulkLoad(parents);
+    }
+
+    private static @NotNull int[] toBox(@NotNull Bounds b)
+    {
+        return new int[] { b.x, b.y, b.x + b.width, b.y + b.height };
+    }
+
+    private static long distanceSquared(@NotNull int[] boxes, int base, int px, int py)
+    {
+        long dx = px < boxes[base] ? (long) boxes[base] - px : px > boxes[base + 2] ? (long) px - boxes[base + 2] : 0;
+        long dy = py < boxes[base + 1] ? (long) boxes[base + 1] - py : py > boxes[base + 3] ? (long) py - boxes[base + 3] : 0;
+        return dx * dx + dy * dy;
+    }
+
+    private static final class Candidate
+      implements Comparable<Candidate>
+    {
+        final @NotNull Object item;
+        final long distance;
+        final boolean isValue;
+
+        Candidate(@NotNull Object item, long distance, boolean isValue)
+        {
+            this.item = item;
+            this.distance = distance;
+            this.isValue = isValue;
+        }
+
+        Candidate(@NotNull Node node, long distance)
+        {
+            this(node, distance, false);
+        }
+
+        @Override
+        public int compareTo(@NotNull Candidate o)
+        {
+            int result = Long.compare(distance, o.distance);
+            if (result == 0 && isValue != o.isValue) {
+                // Prefer values over nodes at the same distance, so that results are returned as early as possible
+                return isValue ? -1 : 1;
+            }
+            return result;
+        }
+    }
+
+    /**
+      A node of the tree. Each entry has a bounding box, stored as four consecutive integers (x1, y1, x2, y2) with
+      inclusive edges, and a child, which is a value in a leaf node and a node otherwise.
+    */
+
+    private static final class Node
+    {
+        final boolean isLeaf;
+        int level;  // zero for leaf nodes
+        int count;
+        @NotNull int[] boxes;
+        @NotNull Object[] children;
+
+        Node(boolean isLeaf, int capacity)
+        {
+            this.isLeaf = isLeaf;
+            this.boxes = new int[capacity * 4];
+            this.children = new Object[capacity];
+        }
+
+        void add(@NotNull int[] source, int offset, @NotNull Object child)
+        {
+            if (count == children.length) {
+                children = Arrays.copyOf(children, count * 2);
+                boxes = Arrays.copyOf(boxes, count * 8);
+            }
+            System.arraycopy(source, offset, boxes, count * 4, 4);
+            children[count] = child;
+            count++;
+        }
+
+        void remove(int index)
+        {
+            int last = count - 1;
+            if (index != last) {
+                System.arraycopy(boxes, last * 4, boxes, index * 4, 4);
+                children[index] = children[last];
+            }
+            children[last] = null;
+            count--;
+        }
+
+        void setBox(int index, @NotNull int[] box)
+        {
+            System.arraycopy(box, 0, boxes, index * 4, 4);
+        }
+
+        boolean isSameBox(int index, @NotNull int[] box)
+        {
+            int base = index * 4;
+            return boxes[base] == box[0] && boxes[base + 1] == box[1]
+              && boxes[base + 2] == box[2] && boxes[base + 3] == box[3];
+        }
+
+        boolean containsBox(int index, @NotNull int[] box)
+        {
+            int base = index * 4;
+            return boxes[base] <= box[0] && boxes[base + 1] <= box[1]
+              && boxes[base + 2] >= box[2] && boxes[base + 3] >= box[3];
+        }
+
+        @NotNull int[] computeBox()
+        {
+            int x1 = Integer.MAX_VALUE;
+            int y1 = Integer.MAX_VALUE;
+            int x2 = Integer.MIN_VALUE;
+            int y2 = Integer.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                int base = i * 4;
+                x1 = Math.min(x1, boxes[base]);
+                y1 = Math.min(y1, boxes[base + 1]);
+                x2 = Math.max(x2, boxes[base + 2]);
+                y2 = Math.max(y2, boxes[base + 3]);
+            }
+            return new int[] { x1, y1, x2, y2 };
+        }
+
+        /**
+          Choose the entry whose box requires the least enlargement to include the specified box, resolving ties by
+          choosing the smallest box.
+        */
+
+        int chooseSubtree(@NotNull int[] source, int offset)
+        {
+            int best = 0;
+            long bestEnlargement = Long.MAX_VALUE;
+            long bestArea = Long.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                int base = i * 4;
+                long area = area(boxes[base], boxes[base + 1], boxes[base + 2], boxes[base + 3]);
+                long enlarged = area(Math.min(boxes[base], source[offset]),
+                  Math.min(boxes[base + 1], source[offset + 1]),
+                  Math.max(boxes[base + 2], source[offset + 2]),
+                  Math.max(boxes[base + 3], source[offset + 3]));
+                long enlargement = enlarged - area;
+                if (enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea)) {
+                    best = i;
+                    bestEnlargement = enlargement;
+                    bestArea = area;
+                }
+            }
+            return best;
+        }
+
+        /**
+          Split this node by moving half of its entries to a new node. The entries are divided along the axis in
+          which their centers are most spread out.
+          @return the new node.
+        */
+
+        @NotNull Node split()
+        {
+            int axis = spread(0) >= spread(1) ? 0 : 1;
+            int[] order = sortedByCenter(0, count, axis);
+            int[] oldBoxes = boxes;
+            Object[] oldChildren = children;
+            int oldCount = count;
+            int half = oldCount / 2;
+
+            boxes = new int[oldBoxes.length];
+            children = new Object[oldChildren.length];
+            count = 0;
+            Node sibling = new Node(isLeaf, oldChildren.length);
+            sibling.level = level;
+            for (int k = 0; k < oldCount; k++) {
+                int i = order[k];
+                (k < half ? this : sibling).add(oldBoxes, i * 4, oldChildren[i]);
+            }
+            return sibling;
+        }
+
+        private long spread(int axis)
+        {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                long center = center(i, axis);
+                min = Math.min(min, center);
+                max = Math.max(max, center);
+            }
+            return max - min;
+        }
+
+        @NotNull int[] sortedByCenter(int from, int to, int axis)
+        {
+            int[] indexes = new int[to - from];
+            for (int i = from; i < to; i++) {
+                indexes[i - from] = i;
+            }
+            return sortIndexesByCenter(indexes, axis);
+        }
+
+        @NotNull int[] sortIndexesByCenter(@NotNull int[] indexes, int axis)
+        {
+            long[] keys = new long[indexes.length];
+            for (int k = 0; k < indexes.length; k++) {
+                // The center in the high bits, the index in the low bits
+                long center = center(indexes[k], axis) >> 1;
+                keys[k] = (center << 32) | indexes[k];
+            }
+            Arrays.sort(keys);
+            int[] result = new int[indexes.length];
+            for (int k = 0; k < keys.length; k++) {
+                result[k] = (int) (keys[k] & 0xFFFFFFFFL);
+            }
+            return result;
+        }
+
+        private long center(int index, int axis)
+        {
+            int base = index * 4 + axis;
+            return (long) boxes[base] + boxes[base + 2];
+        }
+
+        private static long area(int x1, int y1, int x2, int y2)
+        {
+            return ((long) x2 - x1) * ((long) y2 - y1);
+        }
+    }
+}
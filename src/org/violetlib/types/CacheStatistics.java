@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+import org.violetlib.annotations.Value;
+
+/**
+  A snapshot of the usage of a cache of canonical instances.
+*/
+
+public final @Immutable @Value class CacheStatistics
+{
+    /**
+      Create a cache statistics snapshot.
+      @param hits The number of requests satisfied by the cache.
+      @param misses The number of requests that were not satisfied by the cache.
+      @return the statistics.
+      @throws IllegalArgumentException if {@code hits} or {@code misses} is negative.
+    */
+
+    public static @NotNull CacheStatistics create(long hits, long misses)
+      throws IllegalArgumentException
+    {
+        return new CacheStatistics(hits, misses);
+    }
+
+    private final long hits;
+    private final long misses;
+
+    private CacheStatistics(long hits, long misses)
+      throws IllegalArgumentException
+    {
+        if (hits < 0) {
+            throw new IllegalArgumentException("Invalid hit count: " + hits);
+        }
+
+        if (misses < 0) {
+            throw new IllegalArgumentException("Invalid miss count: " + misses);
+        }
+
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    public long getHits()
+    {
+        return hits;
+    }
+
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    public long getRequests()
+    {
+        return hits + misses;
+    }
+
+    /**
+      Return the fraction of requests that were satisfied by the cache.
+      @return the hit rate, in the range 0 to 1, or zero if there have been no requests.
+    */
+
+    public double getHitRate()
+    {
+        long requests = hits + misses;
+        return requests > 0 ? (double) hits / requests : 0;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof CacheStatistics)) return false;
+        CacheStatistics that = (CacheStatistics) o;
+        return hits == that.hits && misses == that.misses;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * Long.hashCode(hits) + Long.hashCode(misses);
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        return "CacheStatistics{" +
+                 "hits=" + hits +
+                 ", misses=" + misses +
+                 '}';
+    }
+}
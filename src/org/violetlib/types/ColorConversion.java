@@ -0,0 +1,364 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import org.jetbrains.annotations.*;
+
+/**
+  Bulk conversion of colors between color spaces.
+  <p>
+  Packed colors use the 32-bit ARGB form defined by {@link PackedColor}. Unpacked colors are stored as four
+  consecutive floats per color. The float layouts are:
+  <ul>
+  <li>RGBA: sRGB red, green, blue and alpha, each nominally 0 to 1, as in {@link ColorDescription}.</li>
+  <li>Linear RGBA: linear (gamma decoded) sRGB red, green, blue and alpha, each nominally 0 to 1.</li>
+  <li>HSLA: hue (0 to 1, a fraction of a full turn), saturation, lightness and alpha, each 0 to 1.</li>
+  <li>LabA: CIE L* (0 to 100), a*, b* (D65 white point) and alpha.</li>
+  </ul>
+  The alpha component is copied unchanged. Colors are not premultiplied. Unless otherwise stated, the source and
+  target arrays may be the same array, provided that the ranges are either identical or do not overlap.
+  <p>
+  Conversions from 8-bit components use lookup tables for the sRGB transfer function. The loops are written to be
+  simple enough for the JIT compiler to unroll and, where possible, vectorize.
+*/
+
+public final class ColorConversion
+{
+    // sRGB 8-bit component to linear
+    private static final float[] TO_LINEAR = new float[256];
+
+    // Linear value quantized to LINEAR_STEPS to an sRGB 8-bit component
+    private static final int LINEAR_STEPS = 16383;
+    private static final byte[] FROM_LINEAR = new byte[LINEAR_STEPS + 1];
+
+    // Normalized 8-bit component
+    private static final float[] TO_UNIT = new float[256];
+
+    // D65 reference white
+    private static final float XN = 0.95047f;
+    private static final float YN = 1.00000f;
+    private static final float ZN = 1.08883f;
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            TO_UNIT[i] = i / 255f;
+            TO_LINEAR[i] = srgbToLinear(i / 255f);
+        }
+        for (int i = 0; i <= LINEAR_STEPS; i++) {
+            FROM_LINEAR[i] = (byte) Math.round(linearToSrgb((float) i / LINEAR_STEPS) * 255);
+        }
+    }
+
+    /**
+      Convert packed colors to RGBA floats.
+    */
+
+    public static void argbToRgba(@NotNull int[] source, int sourceOffset,
+                                  @NotNull float[] target, int targetOffset, int count)
+    {
+        for (int i = 0; i < count; i++) {
+            int c = source[sourceOffset + i];
+            int t = targetOffset + i * 4;
+            target[t] = TO_UNIT[(c >> 16) & 0xFF];
+            target[t + 1] = TO_UNIT[(c >> 8) & 0xFF];
+            target[t + 2] = TO_UNIT[c & 0xFF];
+            target[t + 3] = TO_UNIT[c >>> 24];
+        }
+    }
+
+    /**
+      Convert RGBA floats to packed colors. Components are clamped to the range 0 to 1 and rounded.
+    */
+
+    public static void rgbaToArgb(@NotNull float[] source, int sourceOffset,
+                                  @NotNull int[] target, int targetOffset, int count)
+    {
+        for (int i = 0; i < count; i++) {
+            int s = sourceOffset + i * 4;
+            target[targetOffset + i] = PackedColor.argb(source[s], source[s + 1], source[s + 2], source[s + 3]);
+        }
+    }
+
+    /**
+      Convert packed colors to linear RGBA floats.
+    */
+
+    public static void argbToLinear(@NotNull int[] source, int sourceOffset,
+                                    @NotNull float[] target, int targetOffset, int count)
+    {
+        for (int i = 0; i < count; i++) {
+            int c = source[sourceOffset + i];
+            int t = targetOffset + i * 4;
+            target[t] = TO_LINEAR[(c >> 16) & 0xFF];
+            target[t + 1] = TO_LINEAR[(c >> 8) & 0xFF];
+            target[t + 2] = TO_LINEAR[c & 0xFF];
+            target[t + 3] = TO_UNIT[c >>> 24];
+        }
+    }
+
+    /**
+      Convert linear RGBA floats to packed colors. Components are clamped to the range 0 to 1. The result may differ
+      from exact rounding by one level.
+    */
+
+    public static void linearToArgb(@NotNull float[] source, int sourceOffset,
+                                    @NotNull int[] target, int targetOffset, int count)
+    {
+        for (int i = 0; i < count; i++) {
+            int s = sourceOffset + i * 4;
+            int r = FROM_LINEAR[quantize(source[s])] & 0xFF;
+            int g = FROM_LINEAR[quantize(source[s + 1])] & 0xFF;
+            int b = FROM_LINEAR[quantize(source[s + 2])] & 0xFF;
+            int a = PackedColor.argb(0, 0, 0, source[s + 3]);
+            target[targetOffset + i] = a | r << 16 | g << 8 | b;
+        }
+    }
+
+    /**
+      Convert RGBA floats to linear RGBA floats.
+    */
+
+    public static void rgbaToLinear(@NotNull float[] source, int sourceOffset,
+                                    @NotNull float[] target, int targetOffset, int count)
+    {
+        for (int i = 0; i < count; i++) {
+            int s = sourceOffset + i * 4;
+            int t = targetOffset + i * 4;
+            float alpha = source[s + 3];
+            target[t] = srgbToLinear(source[s]);
+            target[t + 1] = srgbToLinear(source[s + 1]);
+            target[t + 2] = srgbToLinear(source[s + 2]);
+            target[t + 3] = alpha;
+        }
+    }
+
+    /**
+      Convert linear RGBA floats to RGBA floats.
+    */
+
+    public static void linearToRgba(@NotNull float[] source, int sourceOffset,
+                                    @NotNull float[] target, int targetOffset, int count)
+    {
+        for (int i = 0; i < count; i++) {
+            int s = sourceOffset + i * 4;
+            int t = targetOffset + i * 4;
+            float alpha = source[s + 3];
+            target[t] = linearToSrgb(source[s]);
+            target[t + 1] = linearToSrgb(source[s + 1]);
+            target[t + 2] = linearToSrgb(source[s + 2]);
+            target[t + 3] = alpha;
+        }
+    }
+
+    /**
+      Convert RGBA floats to HSLA floats.
+    */
+
+    public static void rgbaToHsla(@NotNull float[] source, int sourceOffset,
+                                  @NotNull float[] target, int targetOffset, int count)
+    {
+        for (int i = 0; i < count; i++) {
+            int s = sourceOffset + i * 4;
+            int t = targetOffset + i * 4;
+            float r = source[s];
+            float g = source[s + 1];
+            float b = source[s + 2];
+            float alpha = source[s + 3];
+            float max = Math.max(r, Math.max(g, b));
+            float min = Math.min(r, Math.min(g, b));
+            float lightness = (max + min) / 2;
+            float hue = 0;
+            float saturation = 0;
+            float delta = max - min;
+            if (delta > 0) {
+                saturation = lightness > 0.5f ? delta / (2 - max - min) : delta / (max + min);
+                if (max == r) {
+                    hue = (g - b) / delta + (g < b ? 6 : 0);
+                } else if (max == g) {
+                    hue = (b - r) / delta + 2;
+                } else {
+                    hue = (r - g) / delta + 4;
+                }
+                hue /= 6;
+            }
+            target[t] = hue;
+            target[t + 1] = saturation;
+            target[t + 2] = lightness;
+            target[t + 3] = alpha;
+        }
+    }
+
+    /**
+      Convert HSLA floats to RGBA floats.
+    */
+
+    public static void hslaToRgba(@NotNull float[] source, int sourceOffset,
+                                  @NotNull float[] target, int targetOffset, int count)
+    {
+        for (int i = 0; i < count; i++) {
+            int s = sourceOffset + i * 4;
+            int t = targetOffset + i * 4;
+            float hue = source[s];
+            float saturation = source[s + 1];
+            float lightness = source[s + 2];
+            float alpha = source[s + 3];
+            float q = lightness < 0.5f ? lightness * (1 + saturation) : lightness + saturation - lightness * saturation;
+            float p = 2 * lightness - q;
+            target[t] = hueToComponent(p, q, hue + 1 / 3f);
+            target[t + 1] = hueToComponent(p, q, hue);
+            target[t + 2] = hueToComponent(p, q, hue - 1 / 3f);
+            target[t + 3] = alpha;
+        }
+    }
+
+    /**
+      Convert packed colors to LabA floats.
+    */
+
+    public static void argbToLab(@NotNull int[] source, int sourceOffset,
+                                 @NotNull float[] target, int targetOffset, int count)
+    {
+        argbToLinear(source, sourceOffset, target, targetOffset, count);
+        linearToLab(target, targetOffset, target, targetOffset, count);
+    }
+
+    /**
+      Convert RGBA floats to LabA floats.
+    */
+
+    public static void rgbaToLab(@NotNull float[] source, int sourceOffset,
+                                 @NotNull float[] target, int targetOffset, int count)
+    {
+        rgbaToLinear(source, sourceOffset, target, targetOffset, count);
+        linearToLab(target, targetOffset, target, targetOffset, count);
+    }
+
+    /**
+      Convert LabA floats to RGBA floats. Colors outside the sRGB gamut produce components outside the range 0 to 1.
+    */
+
+    public static void labToRgba(@NotNull float[] source, int sourceOffset,
+                                 @NotNull float[] target, int targetOffset, int count)
+    {
+        labToLinear(source, sourceOffset, target, targetOffset, count);
+        linearToRgba(target, targetOffset, target, targetOffset, count);
+    }
+
+    /**
+      Convert linear RGBA floats to LabA floats.
+    */
+
+    public static void linearToLab(@NotNull float[] source, int sourceOffset,
+                                   @NotNull float[] target, int targetOffset, int count)
+    {
+        for (int i = 0; i < count; i++) {
+            int s = sourceOffset + i * 4;
+            int t = targetOffset + i * 4;
+            float r = source[s];
+            float g = source[s + 1];
+            float b = source[s + 2];
+            float alpha = source[s + 3];
+            float fx = labF((0.4124564f * r + 0.3575761f * g + 0.1804375f * b) / XN);
+            float fy = labF((0.2126729f * r + 0.7151522f * g + 0.0721750f * b) / YN);
+            float fz = labF((0.0193339f * r + 0.1191920f * g + 0.9503041f * b) / ZN);
+            target[t] = 116 * fy - 16;
+            target[t + 1] = 500 * (fx - fy);
+            target[t + 2] = 200 * (fy - fz);
+            target[t + 3] = alpha;
+        }
+    }
+
+    /**
+      Convert LabA floats to linear RGBA floats. Colors outside the sRGB gamut produce components outside the range 0
+      to 1.
+    */
+
+    public static void labToLinear(@NotNull float[] source, int sourceOffset,
+                                   @NotNull float[] target, int targetOffset, int count)
+    {
+        for (int i = 0; i < count; i++) {
+            int s = sourceOffset + i * 4;
+            int t = targetOffset + i * 4;
+            float fy = (source[s] + 16) / 116;
+            float fx = fy + source[s + 1] / 500;
+            float fz = fy - source[s + 2] / 200;
+            float alpha = source[s + 3];
+            float x = XN * labInverseF(fx);
+            float y = YN * labInverseF(fy);
+            float z = ZN * labInverseF(fz);
+            target[t] = 3.2404542f * x - 1.5371385f * y - 0.4985314f * z;
+            target[t + 1] = -0.9692660f * x + 1.8760108f * y + 0.0415560f * z;
+            target[t + 2] = 0.0556434f * x - 0.2040259f * y + 1.0572252f * z;
+            target[t + 3] = alpha;
+        }
+    }
+
+    /**
+      Apply the sRGB decoding function to a component.
+    */
+
+    public static float srgbToLinear(float c)
+    {
+        return c <= 0.04045f ? c / 12.92f : (float) Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+
+    /**
+      Apply the sRGB encoding function to a component.
+    */
+
+    public static float linearToSrgb(float c)
+    {
+        return c <= 0.0031308f ? c * 12.92f : (float) (1.055 * Math.pow(c, 1 / 2.4) - 0.055);
+    }
+
+    private static int quantize(float c)
+    {
+        if (!(c > 0)) {
+            return 0;  // includes NaN
+        }
+        if (c >= 1) {
+            return LINEAR_STEPS;
+        }
+        return (int) (c * LINEAR_STEPS + 0.5f);
+    }
+
+    private static float hueToComponent(float p, float q, float h)
+    {
+        if (h < 0) {
+            h += 1;
+        } else if (h > 1) {
+            h -= 1;
+        }
+        if (h < 1 / 6f) {
+            return p + (q - p) * 6 * h;
+        }
+        if (h < 1 / 2f) {
+            return q;
+        }
+        if (h < 2 / 3f) {
+            return p + (q - p) * (2 / 3f - h) * 6;
+        }
+        return p;
+    }
+
+    private static float labF(float t)
+    {
+        return t > 216 / 24389f ? (float) Math.cbrt(t) : (24389 / 27f * t + 16) / 116;
+    }
+
+    private static float labInverseF(float f)
+    {
+        float f3 = f * f * f;
+        return f3 > 216 / 24389f ? f3 : (116 * f - 16) / (24389 / 27f);
+    }
+
+    private ColorConversion()
+    {
+    }
+}
@@ -12,8 +12,6 @@ import org.jetbrains.annotations.*;
 import org.violetlib.annotations.Immutable;
 import org.violetlib.annotations.Value;
 
-import java.util.Objects;
-
 /**
   A platform-independent description of a color.
 */
@@ -31,20 +29,57 @@ public final @Immutable @Value class ColorDescription
 
     public static @NotNull ColorDescription gray(int intensity)
     {
-        float v = intensity / 255f;
-        return new ColorDescription(v, v, v, 1f);
+        return create(intensity, intensity, intensity, 255);
     }
 
     public static @NotNull ColorDescription create(int red, int green, int blue)
     {
-        return new ColorDescription(red / 255f, green / 255f, blue / 255f, 1f);
+        return create(red, green, blue, 255);
     }
 
     public static @NotNull ColorDescription create(int red, int green, int blue, int alpha)
     {
+        if ((red | green | blue | alpha) >>> 8 == 0) {
+            return fromArgb(alpha << 24 | red << 16 | green << 8 | blue);
+        }
         return new ColorDescription(red / 255f, green / 255f, blue / 255f, alpha / 255f);
     }
 
+    /**
+      Return a color description for a color with 8-bit components. Recently used colors are shared instances.
+      @param argb The color, packed as defined by {@link PackedColor}.
+      @return the color description.
+    */
+
+    public static @NotNull ColorDescription fromArgb(int argb)
+    {
+        int index = (argb * 0x9E3779B9) >>> (32 - CACHE_BITS);
+        ColorDescription c = CACHE.peek(index);
+        if (c != null && c.argb == argb) {
+            CACHE.recordHit();
+            return c;
+        }
+        CACHE.recordMiss();
+        c = new ColorDescription(PackedColor.red(argb) / 255f, PackedColor.green(argb) / 255f,
+          PackedColor.blue(argb) / 255f, PackedColor.alpha(argb) / 255f, argb);
+        return CACHE.install(index, c);
+    }
+
+    /**
+      Return statistics on the use of shared instances by {@link #fromArgb} and the {@code create} methods.
+      Statistics are recorded only if the system property {@code org.violetlib.types.recordCacheStatistics} is
+      {@code true}; otherwise the counts are zero.
+    */
+
+    public static @NotNull CacheStatistics getCacheStatistics()
+    {
+        return CACHE.getStatistics();
+    }
+
+    // A direct mapped cache of colors with 8-bit components
+    private static final int CACHE_BITS = 12;
+    private static final @NotNull ValueTable<ColorDescription> CACHE = new ValueTable<>(1 << CACHE_BITS);
+
     public static @NotNull ColorDescription color(float intensity)
     {
         return new ColorDescription(intensity, intensity, intensity, 1f);
@@ -80,13 +115,20 @@ public final @Immutable @Value class ColorDescription
     private final float green;
     private final float blue;
     private final float alpha;
+    private final int argb;  // the 8-bit components of a color created from them, otherwise -1 (a valid value)
 
     private ColorDescription(float red, float green, float blue, float alpha)
+    {
+        this(red, green, blue, alpha, -1);
+    }
+
+    private ColorDescription(float red, float green, float blue, float alpha, int argb)
     {
         this.red = red;
         this.green = green;
         this.blue = blue;
         this.alpha = alpha;
+        this.argb = argb;
     }
 
     public float getRed()
@@ -109,6 +151,16 @@ public final @Immutable @Value class ColorDescription
         return alpha;
     }
 
+    /**
+      Return this color with 8-bit components. Components are clamped to the range 0 to 1 and rounded.
+      @return the color, packed as defined by {@link PackedColor}.
+    */
+
+    public int toArgb()
+    {
+        return PackedColor.argb(red, green, blue, alpha);
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -124,7 +176,11 @@ public final @Immutable @Value class ColorDescription
     @Override
     public int hashCode()
     {
-        return Objects.hash(red, green, blue, alpha);
+        int result = Float.floatToIntBits(red);
+        result = 31 * result + Float.floatToIntBits(green);
+        result = 31 * result + Float.floatToIntBits(blue);
+        result = 31 * result + Float.floatToIntBits(alpha);
+        return result;
     }
 
     @Override
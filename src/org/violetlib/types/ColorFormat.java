@@ -0,0 +1,441 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import org.jetbrains.annotations.*;
+
+/**
+  Parses and formats textual descriptions of colors.
+  <p>
+  The following forms are recognized, ignoring case and leading and trailing white space:
+  <ul>
+  <li>Hexadecimal: {@code #RGB}, {@code #RGBA}, {@code #RRGGBB} and {@code #RRGGBBAA}.</li>
+  <li>Functional: {@code rgb(r, g, b)} and {@code rgba(r, g, b, a)}, where each color component is a number from 0
+  to 255 or a percentage, and the alpha component is a number from 0 to 1 or a percentage.</li>
+  <li>Named: the names of the constants defined by {@link ColorDescription}, and {@code grey} and
+  {@code transparent}.</li>
+  </ul>
+  Parsing operates directly on the characters of the text, so a color can be parsed from part of a larger text
+  without creating a substring. For text that is parsed repeatedly, a {@link Cache} avoids parsing entirely.
+*/
+
+public final class ColorFormat
+{
+    private static final @NotNull String[] NAMES = {
+      "black", "white", "red", "green", "blue", "gray", "grey", "yellow", "clear", "transparent"
+    };
+
+    private static final @NotNull ColorDescription[] NAMED_COLORS = {
+      ColorDescription.BLACK, ColorDescription.WHITE, ColorDescription.RED, ColorDescription.GREEN,
+      ColorDescription.BLUE, ColorDescription.GRAY, ColorDescription.GRAY, ColorDescription.YELLOW,
+      ColorDescription.CLEAR, ColorDescription.CLEAR
+    };
+
+    private static final @NotNull char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+      Parse a color.
+      @param s The text.
+      @return the color.
+      @throws InvalidTextException if the text does not describe a color.
+    */
+
+    public static @NotNull ColorDescription parse(@NotNull CharSequence s)
+      throws InvalidTextException
+    {
+        return parse(s, 0, s.length());
+    }
+
+    /**
+      Parse a color from part of a text.
+      @param s The text.
+      @param start The index of the first character to parse.
+      @param end The index following the last character to parse.
+      @return the color.
+      @throws InvalidTextException if the specified characters do not describe a color.
+      @throws IndexOutOfBoundsException if {@code start} or {@code end} is not valid.
+    */
+
+    public static @NotNull ColorDescription parse(@NotNull CharSequence s, int start, int end)
+      throws InvalidTextException, IndexOutOfBoundsException
+    {
+        if (start < 0 || end > s.length() || start > end) {
+            throw new IndexOutOfBoundsException("Invalid range: " + start + " to " + end);
+        }
+
+        while (start < end && Character.isWhitespace(s.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(s.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            throw InvalidTextException.create("Missing color");
+        }
+
+        char first = s.charAt(start);
+        if (first == '#') {
+            return parseHex(s, start + 1, end);
+        }
+        if (startsWithIgnoreCase(s, start, end, "rgba(")) {
+            return parseFunction(s, start + 5, end, true);
+        }
+        if (startsWithIgnoreCase(s, start, end, "rgb(")) {
+            return parseFunction(s, start + 4, end, false);
+        }
+        for (int i = 0; i < NAMES.length; i++) {
+            String name = NAMES[i];
+            if (end - start == name.length() && startsWithIgnoreCase(s, start, end, name)) {
+                return NAMED_COLORS[i];
+            }
+        }
+        throw InvalidTextException.create("Unrecognized color");
+    }
+
+    /**
+      Format a color in hexadecimal form: {@code #RRGGBB} if the color is opaque, otherwise {@code #RRGGBBAA}.
+      Components are rounded to 8 bits.
+    */
+
+    public static @NotNull String format(@NotNull ColorDescription c)
+    {
+        StringBuilder sb = new StringBuilder(9);
+        formatTo(c, sb);
+        return sb.toString();
+    }
+
+    /**
+      Append the hexadecimal form of a color, as produced by {@link #format}.
+    */
+
+    public static void formatTo(@NotNull ColorDescription c, @NotNull StringBuilder sb)
+    {
+        int argb = c.toArgb();
+        sb.append('#');
+        appendHexByte(sb, PackedColor.red(argb));
+        appendHexByte(sb, PackedColor.green(argb));
+        appendHexByte(sb, PackedColor.blue(argb));
+        int alpha = PackedColor.alpha(argb);
+        if (alpha != 255) {
+            appendHexByte(sb, alpha);
+        }
+    }
+
+    /**
+      Format a color in functional form: {@code rgb(r, g, b)} if the color is opaque, otherwise
+      {@code rgba(r, g, b, a)}. Color components are rounded to 8 bits.
+    */
+
+    public static @NotNull String formatFunctional(@NotNull ColorDescription c)
+    {
+        int argb = c.toArgb();
+        float alpha = c.getAlpha();
+        StringBuilder sb = new StringBuilder(32);
+        sb.append(alpha >= 1 ? "rgb(" : "rgba(");
+        sb.append(PackedColor.red(argb)).append(", ");
+        sb.append(PackedColor.green(argb)).append(", ");
+        sb.append(PackedColor.blue(argb));
+        if (alpha < 1) {
+            sb.append(", ").append(Math.max(0, alpha));
+        }
+        return sb.append(')').toString();
+    }
+
+    private static @NotNull ColorDescription parseHex(@NotNull CharSequence s, int start, int end)
+      throws InvalidTextException
+    {
+        int length = end - start;
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = hexDigit(s.charAt(i));
+            if (digit < 0) {
+                throw InvalidTextException.create("Invalid hexadecimal digit in color");
+            }
+            value = value << 4 | digit;
+        }
+
+        switch (length) {
+            case 3:
+                return ColorDescription.create(expand(value >> 8), expand(value >> 4), expand(value));
+            case 4:
+                return ColorDescription.create(expand(value >> 12), expand(value >> 8), expand(value >> 4),
+                  expand(value));
+            case 6:
+                return ColorDescription.fromArgb(0xFF000000 | value);
+            case 8:
+                return ColorDescription.fromArgb(value << 24 | value >>> 8);
+            default:
+                throw InvalidTextException.create("Invalid number of digits in color");
+        }
+    }
+
+    /**
+      Return the value of an ASCII hexadecimal digit, or -1 if the character is not one. Unlike
+      {@link Character#digit}, other Unicode digits are not accepted.
+    */
+
+    private static int hexDigit(char c)
+    {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static int expand(int digit)
+    {
+        digit &= 0xF;
+        return digit << 4 | digit;
+    }
+
+    private static @NotNull ColorDescription parseFunction(@NotNull CharSequence s, int start, int end,
+                                                           boolean hasAlpha)
+      throws InvalidTextException
+    {
+        if (s.charAt(end - 1) != ')') {
+            throw InvalidTextException.create("Missing closing parenthesis in color");
+        }
+        end--;
+
+        Scanner scanner = new Scanner(s, start, end);
+        float red = scanner.nextComponent(255);
+        scanner.expectComma();
+        float green = scanner.nextComponent(255);
+        scanner.expectComma();
+        float blue = scanner.nextComponent(255);
+        float alpha = 1;
+        if (hasAlpha) {
+            scanner.expectComma();
+            alpha = scanner.nextComponent(1);
+        }
+        scanner.expectEnd();
+        return ColorDescription.color(red, green, blue, alpha);
+    }
+
+    private static boolean startsWithIgnoreCase(@NotNull CharSequence s, int start, int end, @NotNull String prefix)
+    {
+        int length = prefix.length();
+        if (end - start < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.toLowerCase(s.charAt(start + i)) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void appendHexByte(@NotNull StringBuilder sb, int value)
+    {
+        sb.append(HEX_DIGITS[value >> 4]).append(HEX_DIGITS[value & 0xF]);
+    }
+
+    /**
+      Reads the arguments of a functional color description.
+    */
+
+    private static final class Scanner
+    {
+        private final @NotNull CharSequence s;
+        private final int end;
+        private int position;
+
+        Scanner(@NotNull CharSequence s, int start, int end)
+        {
+            this.s = s;
+            this.position = start;
+            this.end = end;
+        }
+
+        /**
+          Read a number or percentage and return it as a fraction of the specified maximum, clamped to the range 0
+          to 1.
+        */
+
+        float nextComponent(float maximum)
+          throws InvalidTextException
+        {
+            skipWhitespace();
+            long digits = 0;
+            long scale = 1;
+            boolean hasDigits = false;
+            while (position < end && isDigit(s.charAt(position))) {
+                digits = Math.min(digits * 10 + (s.charAt(position) - '0'), 1_000_000_000L);
+                hasDigits = true;
+                position++;
+            }
+            if (position < end && s.charAt(position) == '.') {
+                position++;
+                while (position < end && isDigit(s.charAt(position))) {
+                    if (scale < 1_000_000_000L) {
+                        digits = digits * 10 + (s.charAt(position) - '0');
+                        scale *= 10;
+                    }
+                    hasDigits = true;
+                    position++;
+                }
+            }
+            if (!hasDigits) {
+                throw InvalidTextException.create("Missing number in color");
+            }
+            float value = (float) ((double) digits / scale);
+            if (position < end && s.charAt(position) == '%') {
+                position++;
+                value /= 100;
+            } else {
+                value /= maximum;
+            }
+            return Math.min(1, value);
+        }
+
+        void expectComma()
+          throws InvalidTextException
+        {
+            skipWhitespace();
+            if (position >= end || s.charAt(position) != ',') {
+                throw InvalidTextException.create("Missing comma in color");
+            }
+            position++;
+        }
+
+        void expectEnd()
+          throws InvalidTextException
+        {
+            skipWhitespace();
+            if (position != end) {
+                throw InvalidTextException.create("Unexpected text in color");
+            }
+        }
+
+        private void skipWhitespace()
+        {
+            while (position < end && Character.isWhitespace(s.charAt(position))) {
+                position++;
+            }
+        }
+
+        private static boolean isDigit(char c)
+        {
+            return c >= '0' && c <= '9';
+        }
+    }
+
+    /**
+      A bounded cache of parsed colors. The cache is direct mapped: each text is stored in a slot determined by its
+      hash code, replacing any previous occupant. Lookups do not create any objects. A cache may be used concurrently
+      by multiple threads.
+    */
+
+    public static final class Cache
+    {
+        /**
+          Create a cache.
+          @param capacity The number of slots, which is rounded up to a power of two.
+          @throws IllegalArgumentException if {@code capacity} is less than one or greater than 2<sup>24</sup>.
+        */
+
+        public static @NotNull Cache create(int capacity)
+          throws IllegalArgumentException
+        {
+            if (capacity < 1 || capacity > 1 << 24) {
+                throw new IllegalArgumentException("Invalid capacity: " + capacity);
+            }
+            return new Cache(capacity);
+        }
+
+        private final @NotNull ValueTable<Entry> table;
+        private final int mask;
+
+        private Cache(int capacity)
+        {
+            int size = Integer.highestOneBit(capacity);
+            if (size < capacity) {
+                size <<= 1;
+            }
+            this.table = new ValueTable<>(size, true);
+            this.mask = size - 1;
+        }
+
+        public @NotNull ColorDescription parse(@NotNull CharSequence s)
+          throws InvalidTextException
+        {
+            return parse(s, 0, s.length());
+        }
+
+        /**
+          Parse a color from part of a text, as in {@link ColorFormat#parse(CharSequence, int, int)}. Text that is not
+          a valid color is not cached.
+        */
+
+        public @NotNull ColorDescription parse(@NotNull CharSequence s, int start, int end)
+          throws InvalidTextException, IndexOutOfBoundsException
+        {
+            if (start < 0 || end > s.length() || start > end) {
+                throw new IndexOutOfBoundsException("Invalid range: " + start + " to " + end);
+            }
+
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + s.charAt(i);
+            }
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            Entry e = table.peek(slot);
+            if (e != null && e.matches(s, start, end)) {
+                table.recordHit();
+                return e.color;
+            }
+            table.recordMiss();
+            ColorDescription c = ColorFormat.parse(s, start, end);
+            table.install(slot, new Entry(s.subSequence(start, end).toString(), c));
+            return c;
+        }
+
+        public @NotNull CacheStatistics getStatistics()
+        {
+            return table.getStatistics();
+        }
+
+        private static final class Entry
+        {
+            final @NotNull String text;
+            final @NotNull ColorDescription color;
+
+            Entry(@NotNull String text, @NotNull ColorDescription color)
+            {
+                this.text = text;
+                this.color = color;
+            }
+
+            boolean matches(@NotNull CharSequence s, int start, int end)
+            {
+                int length = end - start;
+                if (text.length() != length) {
+                    return false;
+                }
+                for (int i = 0; i < length; i++) {
+                    if (text.charAt(i) != s.charAt(start + i)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    private ColorFormat()
+    {
+    }
+}
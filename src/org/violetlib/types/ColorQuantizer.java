@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jetbrains.annotations.*;
+
+/**
+  Reduces the colors of an image to a small {@link Palette}.
+  <p>
+  The pixels are first summarized as a histogram with five bits per color channel and four bits of alpha, so the cost
+  of quantization depends mostly on the number of pixels, not on the number of distinct colors. The median cut
+  algorithm repeatedly divides the box of histogram colors containing the most pixels along its longest channel,
+  which may be alpha. The k-means algorithm
+  refines a median cut palette by repeatedly moving each entry to the mean (in Lab space) of the colors nearest to it.
+*/
+
+public final class ColorQuantizer
+{
+    /**
+      Create a palette using the median cut algorithm.
+      @param pixels The pixels, packed as defined by {@link PackedColor}.
+      @param offset The index of the first pixel.
+      @param count The number of pixels.
+      @param maximumColors The maximum number of palette entries.
+      @return the palette.
+      @throws IllegalArgumentException if {@code count} or {@code maximumColors} is less than one.
+    */
+
+    public static @NotNull Palette medianCut(@NotNull int[] pixels, int offset, int count, int maximumColors)
+      throws IllegalArgumentException
+    {
+        validate(count, maximumColors);
+        Histogram h = new Histogram(pixels, offset, count);
+        return Palette.create(h.medianCut(maximumColors));
+    }
+
+    /**
+      Create a palette using the k-means algorithm, starting from a median cut palette.
+      @param pixels The pixels, packed as defined by {@link PackedColor}.
+      @param offset The index of the first pixel.
+      @param count The number of pixels.
+      @param maximumColors The maximum number of palette entries.
+      @param iterations The maximum number of refinement steps.
+      @return the palette.
+      @throws IllegalArgumentException if {@code count} or {@code maximumColors} is less than one.
+    */
+
+    public static @NotNull Palette kMeans(@NotNull int[] pixels, int offset, int count, int maximumColors,
+                                          int iterations)
+      throws IllegalArgumentException
+    {
+        validate(count, maximumColors);
+        Histogram h = new Histogram(pixels, offset, count);
+        Palette p = Palette.create(h.medianCut(maximumColors));
+        return h.refine(p, iterations);
+    }
+
+    private static void validate(int count, int maximumColors)
+      throws IllegalArgumentException
+    {
+        if (count < 1) {
+            throw new IllegalArgumentException("No pixels");
+        }
+
+        if (maximumColors < 1) {
+            throw new IllegalArgumentException("Invalid maximum colors: " + maximumColors);
+        }
+    }
+
+    /**
+      The populated cells of a color histogram. Each cell records its pixel count and the sums of its pixel
+      components.
+    */
+
+    private static final class Histogram
+    {
+        private final int cellCount;
+        private final @NotNull long[] counts;
+        private final @NotNull long[] sums;  // red, green, blue, alpha per cell
+        private final @NotNull int[] order;  // cell indexes, rearranged by median cut
+
+        Histogram(@NotNull int[] pixels, int offset, int count)
+        {
+            int[] cellOf = new int[1 << 19];
+            Arrays.fill(cellOf, -1);
+            long[] counts = new long[64];
+            long[] sums = new long[64 * 4];
+            int cells = 0;
+            for (int i = offset; i < offset + count; i++) {
+                int argb = pixels[i];
+                int r = PackedColor.red(argb);
+                int g = PackedColor.green(argb);
+                int b = PackedColor.blue(argb);
+                int a = PackedColor.alpha(argb);
+                int key = (a >> 4) << 15 | (r >> 3) << 10 | (g >> 3) << 5 | (b >> 3);
+                int cell = cellOf[key];
+                if (cell < 0) {
+                    cell = cells++;
+                    cellOf[key] = cell;
+                    if (cell == counts.length) {
+                        counts = Arrays.copyOf(counts, cell * 2);
+                        sums = Arrays.copyOf(sums, cell * 8);
+                    }
+                }
+                counts[cell]++;
+                sums[cell * 4] += r;
+                sums[cell * 4 + 1] += g;
+                sums[cell * 4 + 2] += b;
+                sums[cell * 4 + 3] += a;
+            }
+            this.cellCount = cells;
+            this.counts = counts;
+            this.sums = sums;
+            this.order = new int[cells];
+            for (int i = 0; i < cells; i++) {
+                order[i] = i;
+            }
+        }
+
+        /**
+          Return the mean value of a channel of a cell, in the range 0 to 255.
+        */
+
+        private int mean(int cell, int channel)
+        {
+            return (int) (sums[cell * 4 + channel] / counts[cell]);
+        }
+
+        @NotNull List<ColorDescription> medianCut(int maximumColors)
+        {
+            // Boxes are ranges of the order array, stored as pairs of start (inclusive) and end (exclusive)
+
+            int[] boxes = new int[maximumColors * 2];
+            boxes[0] = 0;
+            boxes[1] = cellCount;
+            int boxCount = 1;
+
+            while (boxCount < maximumColors) {
+                int best = -1;
+                long bestPopulation = 0;
+                for (int i = 0; i < boxCount; i++) {
+                    int start = boxes[i * 2];
+                    int end = boxes[i * 2 + 1];
+                    if (end - start > 1) {
+                        long population = 0;
+                        for (int k = start; k < end; k++) {
+                            population += counts[order[k]];
+                        }
+                        if (population > bestPopulation) {
+                            best = i;
+                            bestPopulation = population;
+                        }
+                    }
+                }
+                if (best < 0) {
+                    break;
+                }
+
+                int start = boxes[best * 2];
+                int end = boxes[best * 2 + 1];
+                int channel = longestChannel(start, end);
+                sortByChannel(start, end, channel);
+
+                // Split at the weighted median, leaving at least one cell on each side
+
+                long half = bestPopulation / 2;
+                long accumulated = 0;
+                int split = start + 1;
+                for (int k = start; k < end - 1; k++) {
+                    accumulated += counts[order[k]];
+                    split = k + 1;
+                    if (accumulated >= half) {
+                        break;
+                    }
+                }
+                boxes[best * 2 + 1] = split;
+                boxes[boxCount * 2] = split;
+                boxes[boxCount * 2 + 1] = end;
+                boxCount++;
+            }
+
+            List<ColorDescription> result = new ArrayList<>(boxCount);
+            for (int i = 0; i < boxCount; i++) {
+                long n = 0;
+                long r = 0;
+                long g = 0;
+                long b = 0;
+                long a = 0;
+                for (int k = boxes[i * 2]; k < boxes[i * 2 + 1]; k++) {
+                    int cell = order[k];
+                    n += counts[cell];
+                    r += sums[cell * 4];
+                    g += sums[cell * 4 + 1];
+                    b += sums[cell * 4 + 2];
+                    a += sums[cell * 4 + 3];
+                }
+                result.add(ColorDescription.create((int) ((r + n / 2) / n), (int) ((g + n / 2) / n),
+                  (int) ((b + n / 2) / n), (int) ((a + n / 2) / n)));
+            }
+            return result;
+        }
+
+        private int longestChannel(int start, int end)
+        {
+            int channel = 0;
+            int longest = -1;
+            for (int c = 0; c < 4; c++) {
+                int min = 255;
+                int max = 0;
+                for (int k = start; k < end; k++) {
+                    int v = mean(order[k], c);
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+                if (max - min > longest) {
+                    longest = max - min;
+                    channel = c;
+                }
+            }
+            return channel;
+        }
+
+        private void sortByChannel(int start, int end, int channel)
+        {
+            long[] keys = new long[end - start];
+            for (int k = start; k < end; k++) {
+                keys[k - start] = (long) mean(order[k], channel) << 32 | order[k];
+            }
+            Arrays.sort(keys);
+            for (int k = start; k < end; k++) {
+                order[k] = (int) keys[k - start];
+            }
+        }
+
+        @NotNull Palette refine(@NotNull Palette p, int iterations)
+        {
+            float[] coordinates = new float[cellCount * 4];
+            for (int cell = 0; cell < cellCount; cell++) {
+                Palette.toCoordinates(mean(cell, 0) / 255f, mean(cell, 1) / 255f, mean(cell, 2) / 255f,
+                  mean(cell, 3) / 255f, coordinates, cell * 4);
+            }
+
+            float[] q = new float[4];
+            Palette.Search search = new Palette.Search();
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                int entries = p.size();
+                double[] totals = new double[entries * 4];
+                long[] populations = new long[entries];
+                for (int cell = 0; cell < cellCount; cell++) {
+                    System.arraycopy(coordinates, cell * 4, q, 0, 4);
+                    int nearest = p.findNearest(q, search);
+                    long n = counts[cell];
+                    populations[nearest] += n;
+                    for (int d = 0; d < 4; d++) {
+                        totals[nearest * 4 + d] += coordinates[cell * 4 + d] * n;
+                    }
+                }
+
+                List<ColorDescription> colors = new ArrayList<>(entries);
+                float[] mean = new float[4];
+                for (int e = 0; e < entries; e++) {
+                    long n = populations[e];
+                    if (n == 0) {
+                        continue;  // an unused entry is dropped
+                    }
+                    for (int d = 0; d < 4; d++) {
+                        mean[d] = (float) (totals[e * 4 + d] / n);
+                    }
+                    colors.add(Palette.fromCoordinates(mean, 0));
+                }
+
+                // Entry indexes are not stable because unused entries are dropped, so convergence is detected by
+                // comparing the entry colors
+
+                if (colors.equals(p.getColors())) {
+                    break;
+                }
+                p = Palette.create(colors);
+            }
+            return p;
+        }
+    }
+
+    private ColorQuantizer()
+    {
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.nio.ByteBuffer;
+
+import org.jetbrains.annotations.*;
+
+/**
+  Composites colors and spans of pixels using a {@link BlendMode}. In each operation, a source is combined with a
+  destination, producing a result that replaces the destination.
+  <p>
+  Pixels are 32-bit ARGB values as defined by {@link PackedColor}. Methods whose names include {@code Premultiplied}
+  require the color components to be premultiplied by alpha, which is the efficient form for repeated compositing;
+  {@link #premultiply} and {@link #unpremultiply} convert between the two forms. The common cases of
+  {@link BlendMode#SRC_OVER} with premultiplied pixels use integer arithmetic and skip fully transparent and fully
+  opaque source pixels.
+*/
+
+public final class Compositor
+{
+    /**
+      Composite a source color with a destination color.
+      @return the resulting color.
+    */
+
+    public static @NotNull ColorDescription composite(@NotNull ColorDescription source,
+                                                      @NotNull ColorDescription destination,
+                                                      @NotNull BlendMode mode)
+    {
+        float as = source.getAlpha();
+        float ab = destination.getAlpha();
+        if (mode == BlendMode.SRC_OVER) {
+            if (as >= 1) {
+                return source;
+            }
+            if (as <= 0) {
+                return destination;
+            }
+        }
+
+        int code = mode.code;
+        float ao = alpha(code, as, ab);
+        if (ao <= 0) {
+            return ColorDescription.CLEAR;
+        }
+        float r = channel(code, source.getRed() * as, as, destination.getRed() * ab, ab);
+        float g = channel(code, source.getGreen() * as, as, destination.getGreen() * ab, ab);
+        float b = channel(code, source.getBlue() * as, as, destination.getBlue() * ab, ab);
+
+        // Premultiplied components must not exceed alpha
+        ao = Math.min(1, ao);
+        return ColorDescription.color(Math.min(r, ao) / ao, Math.min(g, ao) / ao, Math.min(b, ao) / ao, ao);
+    }
+
+    /**
+      Composite a span of premultiplied source pixels with a span of premultiplied destination pixels.
+      @param source The source pixels.
+      @param sourceOffset The index of the first source pixel.
+      @param target The destination pixels, which are replaced by the result.
+      @param targetOffset The index of the first destination pixel.
+      @param count The number of pixels.
+      @param mode The blend mode.
+    */
+
+    public static void compositePremultiplied(@NotNull int[] source, int sourceOffset,
+                                              @NotNull int[] target, int targetOffset,
+                                              int count, @NotNull BlendMode mode)
+    {
+        int code = mode.code;
+        for (int i = 0; i < count; i++) {
+            int t = targetOffset + i;
+            target[t] = compositePixel(source[sourceOffset + i], target[t], code);
+        }
+    }
+
+    /**
+      Composite a premultiplied source color with a span of premultiplied destination pixels.
+      @param source The source color.
+      @param target The destination pixels, which are replaced by the result.
+      @param targetOffset The index of the first destination pixel.
+      @param count The number of pixels.
+      @param mode The blend mode.
+    */
+
+    public static void compositePremultiplied(int source, @NotNull int[] target, int targetOffset,
+                                              int count, @NotNull BlendMode mode)
+    {
+        int code = mode.code;
+        if (code == BlendMode.SRC_OVER.code && (source >>> 24) == 0 || code == BlendMode.DST.code) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int t = targetOffset + i;
+            target[t] = compositePixel(source, target[t], code);
+        }
+    }
+
+    /**
+      Composite a span of premultiplied source pixels with a span of premultiplied destination pixels stored in byte
+      buffers. Each pixel is a 32-bit ARGB value stored in the byte order of its buffer. The buffer positions are not
+      used or changed.
+      @param source The source pixels.
+      @param sourceIndex The byte index of the first source pixel.
+      @param target The destination pixels, which are replaced by the result.
+      @param targetIndex The byte index of the first destination pixel.
+      @param count The number of pixels.
+      @param mode The blend mode.
+    */
+
+    public static void compositePremultiplied(@NotNull ByteBuffer source, int sourceIndex,
+                                              @NotNull ByteBuffer target, int targetIndex,
+                                              int count, @NotNull BlendMode mode)
+    {
+        int code = mode.code;
+        for (int i = 0; i < count; i++) {
+            int t = targetIndex + i * 4;
+            target.putInt(t, compositePixel(source.getInt(sourceIndex + i * 4), target.getInt(t), code));
+        }
+    }
+
+    /**
+      Composite a span of source pixels with a span of destination pixels. The pixels are not premultiplied.
+      @param source The source pixels.
+      @param sourceOffset The index of the first source pixel.
+      @param target The destination pixels, which are replaced by the result.
+      @param targetOffset The index of the first destination pixel.
+      @param count The number of pixels.
+      @param mode The blend mode.
+    */
+
+    public static void composite(@NotNull int[] source, int sourceOffset,
+                                 @NotNull int[] target, int targetOffset,
+                                 int count, @NotNull BlendMode mode)
+    {
+        int code = mode.code;
+        for (int i = 0; i < count; i++) {
+            int t = targetOffset + i;
+            int s = source[sourceOffset + i];
+            if (code == BlendMode.SRC_OVER.code) {
+                int sa = s >>> 24;
+                if (sa == 255) {
+                    target[t] = s;
+                    continue;
+                }
+                if (sa == 0) {
+                    continue;
+                }
+            }
+            target[t] = unpremultiply(compositePixel(premultiply(s), premultiply(target[t]), code));
+        }
+    }
+
+    /**
+      Convert pixels to premultiplied form, in place.
+    */
+
+    public static void premultiply(@NotNull int[] pixels, int offset, int count)
+    {
+        for (int i = offset; i < offset + count; i++) {
+            pixels[i] = premultiply(pixels[i]);
+        }
+    }
+
+    /**
+      Convert pixels from premultiplied form, in place.
+    */
+
+    public static void unpremultiply(@NotNull int[] pixels, int offset, int count)
+    {
+        for (int i = offset; i < offset + count; i++) {
+            pixels[i] = unpremultiply(pixels[i]);
+        }
+    }
+
+    public static int premultiply(int argb)
+    {
+        int a = argb >>> 24;
+        if (a == 255) {
+            return argb;
+        }
+        if (a == 0) {
+            return 0;
+        }
+        int rb = (argb & 0x00FF00FF) * a + 0x00800080;
+        rb = ((rb + ((rb >> 8) & 0x00FF00FF)) >> 8) & 0x00FF00FF;
+        int g = (argb & 0x0000FF00) * a + 0x00008000;
+        g = ((g + ((g >> 8) & 0x0000FF00)) >> 8) & 0x0000FF00;
+        return argb & 0xFF000000 | rb | g;
+    }
+
+    public static int unpremultiply(int argb)
+    {
+        int a = argb >>> 24;
+        if (a == 255 || a == 0) {
+            return argb;
+        }
+        int half = a / 2;
+        int r = Math.min(255, (((argb >> 16) & 0xFF) * 255 + half) / a);
+        int g = Math.min(255, (((argb >> 8) & 0xFF) * 255 + half) / a);
+        int b = Math.min(255, ((argb & 0xFF) * 255 + half) / a);
+        return argb & 0xFF000000 | r << 16 | g << 8 | b;
+    }
+
+    private static int compositePixel(int s, int d, int code)
+    {
+        switch (code) {
+            case 0:  // CLEAR
+                return 0;
+            case 1:  // SRC
+                return s;
+            case 2:  // DST
+                return d;
+            case 3:  // SRC_OVER
+                return sourceOver(s, d);
+            case 4:  // DST_OVER
+                return sourceOver(d, s);
+            default:
+                return compositePixelGeneral(s, d, code);
+        }
+    }
+
+    /**
+      Composite premultiplied pixels using source over. Each channel is computed as s + d * (1 - sa), with the red and
+      blue channels and the alpha and green channels computed in pairs.
+    */
+
+    private static int sourceOver(int s, int d)
+    {
+        int sa = s >>> 24;
+        if (sa == 255) {
+            return s;
+        }
+        if (sa == 0) {
+            return d;
+        }
+        int inverse = 255 - sa;
+        int rb = (d & 0x00FF00FF) * inverse + 0x00800080;
+        rb = ((rb + ((rb >>> 8) & 0x00FF00FF)) >>> 8) & 0x00FF00FF;
+        int ag = ((d >>> 8) & 0x00FF00FF) * inverse + 0x00800080;
+        ag = (ag + ((ag >>> 8) & 0x00FF00FF)) & 0xFF00FF00;
+        return s + (rb | ag);
+    }
+
+    private static int compositePixelGeneral(int s, int d, int code)
+    {
+        float as = (s >>> 24) / 255f;
+        float ab = (d >>> 24) / 255f;
+        float ao = alpha(code, as, ab);
+        float r = channel(code, ((s >> 16) & 0xFF) / 255f, as, ((d >> 16) & 0xFF) / 255f, ab);
+        float g = channel(code, ((s >> 8) & 0xFF) / 255f, as, ((d >> 8) & 0xFF) / 255f, ab);
+        float b = channel(code, (s & 0xFF) / 255f, as, (d & 0xFF) / 255f, ab);
+
+        // Premultiplied components must not exceed alpha
+        ao = Math.min(1, ao);
+        return PackedColor.argb(Math.min(r, ao), Math.min(g, ao), Math.min(b, ao), ao);
+    }
+
+    private static float alpha(int code, float as, float ab)
+    {
+        if (code >= BlendMode.FIRST_BLEND) {
+            return as + ab - as * ab;
+        }
+        return as * sourceFactor(code, ab) + ab * destinationFactor(code, as);
+    }
+
+    /**
+      Composite a premultiplied color channel.
+      @param cs The premultiplied source component.
+      @param as The source alpha.
+      @param cb The premultiplied destination (backdrop) component.
+      @param ab The destination alpha.
+      @return the premultiplied result component.
+    */
+
+    private static float channel(int code, float cs, float as, float cb, float ab)
+    {
+        if (code < BlendMode.FIRST_BLEND) {
+            float c = cs * sourceFactor(code, ab) + cb * destinationFactor(code, as);
+            return code == BlendMode.PLUS.code ? Math.min(1, c) : c;
+        }
+        float s = as > 0 ? cs / as : 0;
+        float b = ab > 0 ? cb / ab : 0;
+        return cs * (1 - ab) + cb * (1 - as) + as * ab * blend(code, b, s);
+    }
+
+    private static float sourceFactor(int code, float ab)
+    {
+        switch (code) {
+            case 1:  // SRC
+            case 3:  // SRC_OVER
+            case 12: // PLUS
+                return 1;
+            case 4:  // DST_OVER
+            case 7:  // SRC_OUT
+            case 10: // DST_ATOP
+            case 11: // XOR
+                return 1 - ab;
+            case 5:  // SRC_IN
+            case 9:  // SRC_ATOP
+                return ab;
+            default:
+                return 0;
+        }
+    }
+
+    private static float destinationFactor(int code, float as)
+    {
+        switch (code) {
+            case 2:  // DST
+            case 4:  // DST_OVER
+            case 12: // PLUS
+                return 1;
+            case 3:  // SRC_OVER
+            case 8:  // DST_OUT
+            case 9:  // SRC_ATOP
+            case 11: // XOR
+                return 1 - as;
+            case 6:  // DST_IN
+            case 10: // DST_ATOP
+                return as;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+      Apply a blend function to unpremultiplied components.
+      @param b The destination (backdrop) component.
+      @param s The source component.
+    */
+
+    private static float blend(int code, float b, float s)
+    {
+        switch (code) {
+            case 13: // MULTIPLY
+                return b * s;
+            case 14: // SCREEN
+                return b + s - b * s;
+            case 15: // OVERLAY
+                return b <= 0.5f ? 2 * b * s : 1 - 2 * (1 - b) * (1 - s);
+            case 16: // DARKEN
+                return Math.min(b, s);
+            case 17: // LIGHTEN
+                return Math.max(b, s);
+            default: // DIFFERENCE
+                return Math.abs(b - s);
+        }
+    }
+
+    private Compositor()
+    {
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.jetbrains.annotations.*;
+
+/**
+  Accumulates damaged (dirty) rectangles for a display and coalesces them into a small set of rectangles to repaint.
+  <p>
+  Rectangles may be added from any thread. The accumulated damage is typically collected once per frame using
+  {@link #takeDamage}. Collection merges rectangles when repainting their union is estimated to be cheaper than
+  repainting them separately. The estimate charges each pixel one unit and each rectangle a fixed overhead, specified
+  in pixels. Pixels covered by more than one rectangle are charged once for each rectangle.
+*/
+
+public final class DamageAccumulator
+{
+    /**
+      Create a damage accumulator using default parameters.
+    */
+
+    public static @NotNull DamageAccumulator create()
+    {
+        return new DamageAccumulator(DEFAULT_RECTANGLE_COST, DEFAULT_MAXIMUM_RECTANGLES);
+    }
+
+    /**
+      Create a damage accumulator.
+      @param rectangleCost The estimated cost of repainting a rectangle, in addition to the cost of its pixels,
+      expressed as a number of pixels.
+      @param maximumRectangles The maximum number of rectangles to be returned by {@link #takeDamage}.
+      @throws IllegalArgumentException if {@code rectangleCost} is negative or {@code maximumRectangles} is less than
+      one.
+    */
+
+    public static @NotNull DamageAccumulator create(long rectangleCost, int maximumRectangles)
+      throws IllegalArgumentException
+    {
+        if (rectangleCost < 0) {
+            throw new IllegalArgumentException("Invalid rectangle cost: " + rectangleCost);
+        }
+
+        if (maximumRectangles < 1) {
+            throw new IllegalArgumentException("Invalid maximum rectangles: " + maximumRectangles);
+        }
+
+        return new DamageAccumulator(rectangleCost, maximumRectangles);
+    }
+
+    private static final long DEFAULT_RECTANGLE_COST = 1024;
+    private static final int DEFAULT_MAXIMUM_RECTANGLES = 16;
+
+    private final long rectangleCost;
+    private final int maximumRectangles;
+    private final @NotNull Object lock = new Object();
+    private @NotNull BoundsArray pending = BoundsArray.create();  // protected by lock
+
+    private DamageAccumulator(long rectangleCost, int maximumRectangles)
+    {
+        this.rectangleCost = rectangleCost;
+        this.maximumRectangles = maximumRectangles;
+    }
+
+    /**
+      Add a damaged rectangle. Empty rectangles are ignored.
+    */
+
+    public void add(@NotNull Bounds b)
+    {
+        add(b.x, b.y, b.width, b.height);
+    }
+
+    /**
+      Add a damaged rectangle. Empty rectangles are ignored.
+      @throws IllegalArgumentException if {@code width} or {@code height} is negative.
+    */
+
+    public void add(int x, int y, int width, int height)
+      throws IllegalArgumentException
+    {
+        if (width < 0) {
+            throw new IllegalArgumentException("Invalid width: " + width);
+        }
+
+        if (height < 0) {
+            throw new IllegalArgumentException("Invalid height: " + height);
+        }
+
+        if (width == 0 || height == 0) {
+            return;
+        }
+
+        synchronized (lock) {
+            pending.add(x, y, width, height);
+        }
+    }
+
+    /**
+      Return true if and only if no damage has been added since the last call to {@link #takeDamage}.
+    */
+
+    public boolean isEmpty()
+    {
+        synchronized (lock) {
+            return pending.isEmpty();
+        }
+    }
+
+    /**
+      Return the accumulated damage, coalesced, and reset the accumulated damage to empty.
+      @return rectangles whose union includes all damage added since the previous call.
+    */
+
+    public @NotNull List<Bounds> takeDamage()
+    {
+        BoundsArray damage;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return new ArrayList<>(0);
+            }
+            damage = pending;
+            pending = BoundsArray.create(damage.size());
+        }
+        return coalesce(damage);
+    }
+
+    private @NotNull List<Bounds> coalesce(@NotNull BoundsArray damage)
+    {
+        Coalescer c = new Coalescer(damage);
+        c.mergeProfitable();
+        c.reduceTo(maximumRectangles);
+        return c.getResult();
+    }
+
+    /**
+      The state of one coalescing operation. Rectangles are stored as (x1, y1, x2, y2) with exclusive upper edges, and
+      are indexed by a {@link BoundsIndex} so that merge candidates are found without examining every pair.
+    */
+
+    private final class Coalescer
+    {
+        // The number of nearest rectangles considered as merge candidates when the rectangle count must be reduced
+        private static final int NEIGHBOURS = 4;
+
+        final @NotNull long[] x1;
+        final @NotNull long[] y1;
+        final @NotNull long[] x2;
+        final @NotNull long[] y2;
+        final @NotNull boolean[] isMerged;
+        final @NotNull int[] versions;  // incremented when a rectangle grows
+        final @NotNull Bounds[] boxes;  // the current rectangles, as registered in the index
+        final @NotNull BoundsIndex<Integer> index;
+        int count;
+
+        Coalescer(@NotNull BoundsArray damage)
+        {
+            int n = damage.size();
+            x1 = new long[n];
+            y1 = new long[n];
+            x2 = new long[n];
+            y2 = new long[n];
+            isMerged = new boolean[n];
+            versions = new int[n];
+            boxes = new Bounds[n];
+            damage.forEach((i, x, y, width, height) -> {
+                x1[i] = x;
+                y1[i] = y;
+                x2[i] = (long) x + width;
+                y2[i] = (long) y + height;
+            });
+            List<Integer> indexes = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                boxes[i] = toBounds(i);
+                indexes.add(i);
+            }
+            index = BoundsIndex.create(indexes, i -> boxes[i]);
+            count = n;
+        }
+
+        /**
+          Merge all pairs whose union is estimated to be no more expensive than the pair.
+          <p>
+          If two rectangles are separated by a gap of {@code d} pixels along one axis, their union costs at least
+          {@code d} times the extent of either rectangle along the other axis more than the pair, less the rectangle
+          cost. A profitable partner of a rectangle must therefore lie within a window that extends beyond the
+          rectangle by the rectangle cost divided by its height horizontally, and by the rectangle cost divided by its
+          width vertically. Only rectangles in that window are examined.
+        */
+
+        void mergeProfitable()
+        {
+            ArrayDeque<Integer> work = new ArrayDeque<>(count);
+            for (int i = 0; i < x1.length; i++) {
+                work.add(i);
+            }
+            while (!work.isEmpty()) {
+                int i = work.remove();
+                if (isMerged[i]) {
+                    continue;
+                }
+                long dx = rectangleCost / (y2[i] - y1[i]);
+                long dy = rectangleCost / (x2[i] - x1[i]);
+                Bounds window = toBounds(x1[i] - dx, y1[i] - dy, x2[i] + dx, y2[i] + dy);
+                for (int j : index.getIntersecting(window)) {
+                    if (j != i && mergeCost(i, j) <= 0) {
+                        merge(i, j);
+                        work.add(i);  // rectangle i has grown and may now have other profitable partners
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+          Merge the least expensive pairs of neighbouring rectangles until no more than the specified number remain.
+          Candidate pairs are kept in a priority queue; pairs made stale by earlier merges are discarded or re-evaluated
+          when they reach the head of the queue.
+        */
+
+        void reduceTo(int limit)
+        {
+            if (count <= limit) {
+                return;
+            }
+            PriorityQueue<Candidate> queue = new PriorityQueue<>();
+            addAllCandidates(queue);
+            while (count > limit) {
+                Candidate c = queue.poll();
+                if (c == null) {
+                    addAllCandidates(queue);
+                    continue;
+                }
+                if (isMerged[c.i] || isMerged[c.j]) {
+                    continue;
+                }
+                if (c.versionI != versions[c.i] || c.versionJ != versions[c.j]) {
+                    queue.add(new Candidate(mergeCost(c.i, c.j), c.i, c.j));
+                    continue;
+                }
+                merge(c.i, c.j);
+                addCandidates(queue, c.i);
+            }
+        }
+
+        @NotNull List<Bounds> getResult()
+        {
+            List<Bounds> result = new ArrayList<>(count);
+            for (int i = 0; i < boxes.length; i++) {
+                if (!isMerged[i]) {
+                    result.add(boxes[i]);
+                }
+            }
+            return result;
+        }
+
+        private void addAllCandidates(@NotNull PriorityQueue<Candidate> queue)
+        {
+            for (int i = 0; i < boxes.length; i++) {
+                if (!isMerged[i]) {
+                    addCandidates(queue, i);
+                }
+            }
+        }
+
+        private void addCandidates(@NotNull PriorityQueue<Candidate> queue, int i)
+        {
+            int cx = (int) ((x1[i] + x2[i]) / 2);
+            int cy = (int) ((y1[i] + y2[i]) / 2);
+            for (int j : index.getNearest(cx, cy, NEIGHBOURS + 1)) {
+                if (j != i) {
+                    queue.add(new Candidate(mergeCost(i, j), i, j));
+                }
+            }
+        }
+
+        /**
+          Return the estimated increase in cost from replacing two rectangles with their union.
+        */
+
+        private long mergeCost(int i, int j)
+        {
+            long union = (Math.max(x2[i], x2[j]) - Math.min(x1[i], x1[j]))
+              * (Math.max(y2[i], y2[j]) - Math.min(y1[i], y1[j]));
+            long separate = (x2[i] - x1[i]) * (y2[i] - y1[i]) + (x2[j] - x1[j]) * (y2[j] - y1[j]) + rectangleCost;
+            return union - separate;
+        }
+
+        /**
+          Replace rectangle {@code i} with the union of rectangles {@code i} and {@code j}, and discard rectangle
+          {@code j}.
+        */
+
+        private void merge(int i, int j)
+        {
+            index.remove(boxes[i], i);
+            index.remove(boxes[j], j);
+            x1[i] = Math.min(x1[i], x1[j]);
+            y1[i] = Math.min(y1[i], y1[j]);
+            x2[i] = Math.max(x2[i], x2[j]);
+            y2[i] = Math.max(y2[i], y2[j]);
+            boxes[i] = toBounds(i);
+            index.add(boxes[i], i);
+            versions[i]++;
+            isMerged[j] = true;
+            count--;
+        }
+
+        private @NotNull Bounds toBounds(int i)
+        {
+            return toBounds(x1[i], y1[i], x2[i], y2[i]);
+        }
+
+        private @NotNull Bounds toBounds(long x1, long y1, long x2, long y2)
+        {
+            int x = clamp(x1);
+            int y = clamp(y1);
+            return Bounds.create(x, y, clamp(x2 - x), clamp(y2 - y));
+        }
+
+        private final class Candidate
+          implements Comparable<Candidate>
+        {
+            final long cost;
+            final int i;
+            final int j;
+            final int versionI;
+            final int versionJ;
+
+            Candidate(long cost, int i, int j)
+            {
+                this.cost = cost;
+                this.i = i;
+                this.j = j;
+                this.versionI = versions[i];
+                this.versionJ = versions[j];
+            }
+
+            @Override
+            public int compareTo(@NotNull Candidate o)
+            {
+                return Long.compare(cost, o.cost);
+            }
+        }
+    }
+
+    private static int clamp(long value)
+    {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+    }
+}
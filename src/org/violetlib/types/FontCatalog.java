@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A set of available fonts that supports finding the best available match for a requested font description.
+  <p>
+  A match is found as follows. If the requested family is available, it is used; otherwise the fallback families are
+  tried in order; otherwise the first available family (in alphabetical order) is used. Family names are compared
+  ignoring case. Within the family, fonts with the requested posture are preferred; if there are none, fonts with the
+  other posture are used. Among those, the font with the closest weight is chosen. If two weights are equally close,
+  the heavier one is chosen when the requested weight is heavier than regular, and the lighter one otherwise. Finally,
+  the font with the closest size is chosen, unless the catalog contains scalable fonts, in which case the requested
+  size is used.
+  <p>
+  Each step takes logarithmic time. Matches are also memoized.
+  <p>
+  The set of available fonts does not change, but the memo and the match statistics do. This class is thread safe.
+*/
+
+public final class FontCatalog
+{
+    /**
+      Create a catalog of fonts that are available only in specific sizes.
+      @param fonts The available fonts.
+      @param fallbackFamilies The families to try, in order, when a requested family is not available.
+    */
+
+    public static @NotNull FontCatalog create(@NotNull Collection<FontDescription> fonts,
+                                              @NotNull List<String> fallbackFamilies)
+    {
+        return new FontCatalog(fonts, fallbackFamilies, false);
+    }
+
+    /**
+      Create a catalog of scalable fonts. The sizes of the available fonts are ignored; a match has the requested
+      size.
+      @param fonts The available fonts.
+      @param fallbackFamilies The families to try, in order, when a requested family is not available.
+    */
+
+    public static @NotNull FontCatalog createScalable(@NotNull Collection<FontDescription> fonts,
+                                                      @NotNull List<String> fallbackFamilies)
+    {
+        return new FontCatalog(fonts, fallbackFamilies, true);
+    }
+
+    // The maximum number of memoized matches. The memo is cleared when the limit is reached.
+    private static final int MEMO_LIMIT = 4096;
+
+    private final @NotNull TreeMap<String,Family> families;
+    private final @NotNull List<Family> fallbacks;
+    private final boolean isScalable;
+    private final int fontCount;
+    private final @NotNull ConcurrentHashMap<FontDescription,FontDescription> memo = new ConcurrentHashMap<>();
+    private final @NotNull LongAdder hits = new LongAdder();
+    private final @NotNull LongAdder misses = new LongAdder();
+
+    /**
+      The available fonts of one family.
+    */
+
+    private static final class Family
+    {
+        final @Nullable Posture regular;
+        final @Nullable Posture oblique;
+
+        Family(@NotNull List<FontDescription> fonts)
+        {
+            List<FontDescription> regularFonts = new ArrayList<>();
+            List<FontDescription> obliqueFonts = new ArrayList<>();
+            for (FontDescription fd : fonts) {
+                (fd.isOblique() ? obliqueFonts : regularFonts).add(fd);
+            }
+            this.regular = regularFonts.isEmpty() ? null : new Posture(regularFonts);
+            this.oblique = obliqueFonts.isEmpty() ? null : new Posture(obliqueFonts);
+        }
+
+        @NotNull Posture getPosture(boolean isOblique)
+        {
+            Posture p = isOblique ? oblique : regular;
+            if (p == null) {
+                p = isOblique ? regular : oblique;
+                assert p != null;
+            }
+            return p;
+        }
+    }
+
+    /**
+      The available fonts of one family and posture, indexed by weight and size.
+    */
+
+    private static final class Posture
+    {
+        final @NotNull float[] weights;  // distinct, ascending
+        final @NotNull float[][] sizes;  // for each weight: distinct, ascending
+        final @NotNull FontDescription[][] fonts;  // parallel to sizes
+
+        Posture(@NotNull List<FontDescription> list)
+        {
+            list.sort((a, b) -> {
+                int c = Float.compare(a.getWeight(), b.getWeight());
+                return c != 0 ? c : Float.compare(a.getSize(), b.getSize());
+            });
+
+            List<FontDescription> distinct = new ArrayList<>();
+            int weightCount = 0;
+            for (FontDescription fd : list) {
+                FontDescription previous = distinct.isEmpty() ? null : distinct.get(distinct.size() - 1);
+                if (previous == null || previous.getWeight() != fd.getWeight()) {
+                    weightCount++;
+                    distinct.add(fd);
+                } else if (previous.getSize() != fd.getSize()) {
+                    distinct.add(fd);
+                }
+            }
+
+            this.weights = new float[weightCount];
+            this.sizes = new float[weightCount][];
+            this.fonts = new FontDescription[weightCount][];
+            int start = 0;
+            int w = 0;
+            while (start < distinct.size()) {
+                float weight = distinct.get(start).getWeight();
+                int end = start + 1;
+                while (end < distinct.size() && distinct.get(end).getWeight() == weight) {
+                    end++;
+                }
+                weights[w] = weight;
+                sizes[w] = new float[end - start];
+                fonts[w] = new FontDescription[end - start];
+                for (int i = start; i < end; i++) {
+                    sizes[w][i - start] = distinct.get(i).getSize();
+                    fonts[w][i - start] = distinct.get(i);
+                }
+                w++;
+                start = end;
+            }
+        }
+
+        @NotNull FontDescription find(float weight, float size)
+        {
+            int w = closestWeight(weight);
+            float[] ss = sizes[w];
+            int s = closest(ss, size, false);
+            return fonts[w][s];
+        }
+
+        private int closestWeight(float weight)
+        {
+            return closest(weights, weight, weight > FontDescription.REGULAR);
+        }
+    }
+
+    private FontCatalog(@NotNull Collection<FontDescription> fonts,
+                        @NotNull List<String> fallbackFamilies,
+                        boolean isScalable)
+    {
+        Map<String,List<FontDescription>> byFamily = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (FontDescription fd : fonts) {
+            byFamily.computeIfAbsent(fd.getFamily(), k -> new ArrayList<>()).add(fd);
+        }
+
+        this.families = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String,List<FontDescription>> e : byFamily.entrySet()) {
+            families.put(e.getKey(), new Family(e.getValue()));
+        }
+
+        List<Family> fs = new ArrayList<>();
+        for (String name : fallbackFamilies) {
+            Family f = families.get(name);
+            if (f != null) {
+                fs.add(f);
+            }
+        }
+        if (!families.isEmpty()) {
+            fs.add(families.firstEntry().getValue());
+        }
+        this.fallbacks = Collections.unmodifiableList(fs);
+        this.isScalable = isScalable;
+        this.fontCount = fonts.size();
+    }
+
+    /**
+      Return the names of the available families, in alphabetical order.
+    */
+
+    public @NotNull List<String> getFamilies()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(families.keySet()));
+    }
+
+    /**
+      Indicate whether a family is available.
+    */
+
+    public boolean containsFamily(@NotNull String family)
+    {
+        return families.containsKey(family);
+    }
+
+    public boolean isScalable()
+    {
+        return isScalable;
+    }
+
+    public boolean isEmpty()
+    {
+        return families.isEmpty();
+    }
+
+    /**
+      Return the available font that best matches a requested font.
+      @param request The requested font.
+      @return the best match, or null if the catalog is empty.
+    */
+
+    public @Nullable FontDescription match(@NotNull FontDescription request)
+    {
+        FontDescription result = memo.get(request);
+        if (result != null) {
+            hits.increment();
+            return result;
+        }
+        misses.increment();
+
+        Family family = families.get(request.getFamily());
+        if (family == null) {
+            if (fallbacks.isEmpty()) {
+                return null;
+            }
+            family = fallbacks.get(0);
+        }
+
+        Posture posture = family.getPosture(request.isOblique());
+        FontDescription fd = posture.find(request.getWeight(), request.getSize());
+        result = isScalable ? fd.withSize(request.getSize()) : fd;
+
+        if (memo.size() >= MEMO_LIMIT) {
+            memo.clear();
+        }
+        memo.put(request, result);
+        return result;
+    }
+
+    /**
+      Return statistics on the use of memoized matches by {@link #match}.
+    */
+
+    public @NotNull CacheStatistics getCacheStatistics()
+    {
+        return CacheStatistics.create(hits.sum(), misses.sum());
+    }
+
+    /**
+      Return the index of the element of a sorted array that is closest to a value.
+      @param values The values, distinct and in ascending order. Must not be empty.
+      @param value The value.
+      @param preferHigher If true, a tie is resolved in favor of the higher element, otherwise the lower one.
+    */
+
+    private static int closest(@NotNull float[] values, float value, boolean preferHigher)
+    {
+        int index = Arrays.binarySearch(values, value);
+        if (index >= 0) {
+            return index;
+        }
+        int higher = -index - 1;
+        if (higher == 0) {
+            return 0;
+        }
+        if (higher == values.length) {
+            return higher - 1;
+        }
+        int lower = higher - 1;
+        float dl = value - values[lower];
+        float dh = values[higher] - value;
+        if (dl == dh) {
+            return preferHigher ? higher : lower;
+        }
+        return dl < dh ? lower : higher;
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        return "FontCatalog{" +
+                 "families=" + families.size() +
+                 ", fonts=" + fontCount +
+                 ", scalable=" + isScalable +
+                 '}';
+    }
+}
@@ -16,6 +16,9 @@ import java.util.Objects;
 
 /**
   A platform-independent description of a font.
+  <p>
+  Font descriptions are canonicalized: equal font descriptions are represented by the same instance, as long as the
+  instance remains in use.
 */
 
 public final @Immutable @Value class FontDescription
@@ -33,7 +36,7 @@ public final @Immutable @Value class FontDescription
     public static @NotNull FontDescription create(@NotNull String family, float weight, float size, boolean isOblique)
       throws IllegalArgumentException
     {
-        return new FontDescription(family, weight, size, isOblique);
+        return REGISTRY.get(family, weight, size, isOblique);
     }
 
     /**
@@ -48,9 +51,32 @@ public final @Immutable @Value class FontDescription
     public static @NotNull FontDescription create(@NotNull String family, float weight, float size)
       throws IllegalArgumentException
     {
-        return new FontDescription(family, weight, size, false);
+        return REGISTRY.get(family, weight, size, false);
+    }
+
+    /**
+      Return statistics on the use of canonical instances by {@link #create} and the methods that derive a font
+      description from an existing one.
+    */
+
+    public static @NotNull CacheStatistics getCacheStatistics()
+    {
+        return REGISTRY.getStatistics();
     }
 
+    /**
+      Create a font description that is not registered. This method is used by the registry to create canonical
+      instances.
+    */
+
+    static @NotNull FontDescription createUnregistered(@NotNull String family, float weight, float size, boolean isOblique)
+      throws IllegalArgumentException
+    {
+        return new FontDescription(family, weight, size, isOblique);
+    }
+
+    private static final @NotNull FontRegistry REGISTRY = new FontRegistry();
+
     public static boolean isValidWeight(float weight)
     {
         return weight >= -1 && weight <= 1;
@@ -76,6 +102,7 @@ public final @Immutable @Value class FontDescription
     private final float weight;
     private final float size;
     private final boolean isOblique;
+    private int hash;  // computed lazily, zero if not yet computed
 
     private FontDescription(@NotNull String family, float weight, float size, boolean isOblique)
       throws IllegalArgumentException
@@ -117,18 +144,27 @@ public final @Immutable @Value class FontDescription
     public @NotNull FontDescription withWeight(float weight)
       throws IllegalArgumentException
     {
-        return new FontDescription(family, weight, size, isOblique);
+        if (Float.compare(weight, this.weight) == 0) {
+            return this;
+        }
+        return REGISTRY.get(family, weight, size, isOblique);
     }
 
     public @NotNull FontDescription withSize(float size)
       throws IllegalArgumentException
     {
-        return new FontDescription(family, weight, size, isOblique);
+        if (Float.compare(size, this.size) == 0) {
+            return this;
+        }
+        return REGISTRY.get(family, weight, size, isOblique);
     }
 
     public @NotNull FontDescription withOblique(boolean isOblique)
     {
-        return new FontDescription(family, weight, size, isOblique);
+        if (isOblique == this.isOblique) {
+            return this;
+        }
+        return REGISTRY.get(family, weight, size, isOblique);
     }
 
     @Override
@@ -146,7 +182,15 @@ public final @Immutable @Value class FontDescription
     @Override
     public int hashCode()
     {
-        return Objects.hash(family, weight, size, isOblique);
+        int h = hash;
+        if (h == 0) {
+            h = family.hashCode();
+            h = 31 * h + Float.floatToIntBits(weight);
+            h = 31 * h + Float.floatToIntBits(size);
+            h = 31 * h + (isOblique ? 1 : 0);
+            hash = h;
+        }
+        return h;
     }
 
     @Override
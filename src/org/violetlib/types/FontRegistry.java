@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A registry of canonical font descriptions. The registry holds its font descriptions weakly, so that a font
+  description that is no longer in use elsewhere can be reclaimed. Family names are also canonicalized, so that all
+  registered font descriptions of a family share one family name string. The registry is safe for concurrent use.
+*/
+
+final class FontRegistry
+{
+    private final @NotNull ConcurrentHashMap<Key,Entry> fonts = new ConcurrentHashMap<>();
+    private final @NotNull ReferenceQueue<FontDescription> queue = new ReferenceQueue<>();
+    private final @NotNull LongAdder hits = new LongAdder();
+    private final @NotNull LongAdder misses = new LongAdder();
+    private final @NotNull ThreadLocal<Key> probes = ThreadLocal.withInitial(Key::new);
+
+    /**
+      The attributes of a font description. A key does not refer to the font description, so that the font description
+      can be reclaimed. The keys in the map are never modified. Lookups use a reusable per-thread probe key, so that
+      finding a registered font description does not allocate.
+    */
+
+    private static final class Key
+    {
+        @NotNull String family = "";
+        float weight;
+        float size;
+        boolean isOblique;
+        int hash;
+
+        Key()
+        {
+        }
+
+        Key(@NotNull String family, float weight, float size, boolean isOblique)
+        {
+            set(family, weight, size, isOblique);
+        }
+
+        void set(@NotNull String family, float weight, float size, boolean isOblique)
+        {
+            this.family = family;
+            this.weight = weight;
+            this.size = size;
+            this.isOblique = isOblique;
+            int h = family.hashCode();
+            h = 31 * h + Float.floatToIntBits(weight);
+            h = 31 * h + Float.floatToIntBits(size);
+            h = 31 * h + (isOblique ? 1 : 0);
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return hash == that.hash
+              && Float.compare(weight, that.weight) == 0
+              && Float.compare(size, that.size) == 0
+              && isOblique == that.isOblique
+              && family.equals(that.family);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+
+    private static final class Entry
+      extends WeakReference<FontDescription>
+    {
+        final @NotNull Key key;
+
+        Entry(@NotNull FontDescription font, @NotNull Key key, @NotNull ReferenceQueue<FontDescription> queue)
+        {
+            super(font, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+      Return the canonical font description with the specified attributes, creating it if necessary.
+      @throws IllegalArgumentException if {@code weight} or {@code size} are invalid.
+    */
+
+    @NotNull FontDescription get(@NotNull String family, float weight, float size, boolean isOblique)
+      throws IllegalArgumentException
+    {
+        Key probe = probes.get();
+        probe.set(family, weight, size, isOblique);
+        Entry e = fonts.get(probe);
+        if (e != null) {
+            FontDescription font = e.get();
+            if (font != null) {
+                hits.increment();
+                return font;
+            }
+        }
+
+        misses.increment();
+        expungeStaleEntries();
+
+        String canonicalFamily = internFamily(family);
+        FontDescription font = FontDescription.createUnregistered(canonicalFamily, weight, size, isOblique);
+        Key canonicalKey = new Key(canonicalFamily, weight, size, isOblique);
+        for (;;) {
+            Entry created = new Entry(font, canonicalKey, queue);
+            Entry existing = fonts.putIfAbsent(canonicalKey, created);
+            if (existing == null) {
+                return font;
+            }
+            FontDescription other = existing.get();
+            if (other != null) {
+                return other;  // another thread registered an equal font description first
+            }
+            if (fonts.replace(canonicalKey, existing, created)) {
+                return font;
+            }
+        }
+    }
+
+    /**
+      Return the canonical instance of a family name. The JVM string table is used because it holds its strings weakly
+      and supports concurrent access.
+    */
+
+    @NotNull String internFamily(@NotNull String family)
+    {
+        return family.intern();
+    }
+
+    /**
+      Return the number of registered font descriptions that have not been reclaimed.
+    */
+
+    int size()
+    {
+        expungeStaleEntries();
+        return fonts.size();
+    }
+
+    @NotNull CacheStatistics getStatistics()
+    {
+        return CacheStatistics.create(hits.sum(), misses.sum());
+    }
+
+    private void expungeStaleEntries()
+    {
+        Object o;
+        while ((o = queue.poll()) != null) {
+            Entry e = (Entry) o;
+            fonts.remove(e.key, e);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+import org.violetlib.annotations.Value;
+
+/**
+  A color gradient defined by color stops. The colors are precomputed into a lookup table when the gradient is
+  created, so evaluating the gradient takes constant time and no floating point color arithmetic.
+  <p>
+  Gradient positions range from 0 to 1. Positions before the first stop have the color of the first stop; positions
+  after the last stop have the color of the last stop. Colors are produced in the 32-bit ARGB form defined by
+  {@link PackedColor}, not premultiplied.
+*/
+
+public final @Immutable class Gradient
+{
+    /**
+      Interpolate the sRGB components of the colors.
+    */
+
+    public static final @NotNull Option INTERPOLATE_SRGB = Option.named("sRGB");
+
+    /**
+      Interpolate the linear (gamma decoded) RGB components of the colors, which models the physical mixing of light.
+    */
+
+    public static final @NotNull Option INTERPOLATE_LINEAR_RGB = Option.named("Linear RGB");
+
+    /**
+      Interpolate the CIE Lab coordinates of the colors, which produces perceptually even transitions.
+    */
+
+    public static final @NotNull Option INTERPOLATE_LAB = Option.named("Lab");
+
+    public static final int DEFAULT_RESOLUTION = 256;
+
+    /**
+      A color at a position in a gradient.
+    */
+
+    public static final @Immutable @Value class Stop
+    {
+        /**
+          Create a gradient stop.
+          @param position The position, from 0 to 1.
+          @param color The color.
+          @throws IllegalArgumentException if {@code position} is not in the range 0 to 1.
+        */
+
+        public static @NotNull Stop create(float position, @NotNull ColorDescription color)
+          throws IllegalArgumentException
+        {
+            if (!(position >= 0 && position <= 1)) {
+                throw new IllegalArgumentException("Invalid gradient stop position: " + position);
+            }
+            return new Stop(position, color);
+        }
+
+        public final float position;
+        public final @NotNull ColorDescription color;
+
+        private Stop(float position, @NotNull ColorDescription color)
+        {
+            this.position = position;
+            this.color = color;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o)
+        {
+            if (this == o) return true;
+            if (!(o instanceof Stop)) return false;
+            Stop that = (Stop) o;
+            return Float.compare(position, that.position) == 0 && color.equals(that.color);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * Float.floatToIntBits(position) + color.hashCode();
+        }
+
+        @Override
+        public @NotNull String toString()
+        {
+            return position + ": " + color;
+        }
+    }
+
+    /**
+      Create a gradient with sRGB interpolation and the default resolution.
+      @param stops The gradient stops, in order of position.
+      @throws IllegalArgumentException if {@code stops} is empty or not in order of position.
+    */
+
+    public static @NotNull Gradient create(@NotNull List<Stop> stops)
+      throws IllegalArgumentException
+    {
+        return create(stops, INTERPOLATE_SRGB, DEFAULT_RESOLUTION);
+    }
+
+    /**
+      Create a gradient.
+      @param stops The gradient stops, in order of position. Two stops may have the same position to create an
+      abrupt transition.
+      @param interpolation The interpolation option: {@link #INTERPOLATE_SRGB}, {@link #INTERPOLATE_LINEAR_RGB} or
+      {@link #INTERPOLATE_LAB}.
+      @param resolution The number of entries in the lookup table, from 2 to 65536.
+      @throws IllegalArgumentException if {@code stops} is empty or not in order of position, or if
+      {@code interpolation} or {@code resolution} is not valid.
+    */
+
+    public static @NotNull Gradient create(@NotNull List<Stop> stops, @NotNull Option interpolation, int resolution)
+      throws IllegalArgumentException
+    {
+        if (stops.isEmpty()) {
+            throw new IllegalArgumentException("Gradient must have at least one stop");
+        }
+
+        for (int i = 1; i < stops.size(); i++) {
+            if (stops.get(i).position < stops.get(i - 1).position) {
+                throw new IllegalArgumentException("Gradient stops must be in order of position");
+            }
+        }
+
+        if (interpolation != INTERPOLATE_SRGB && interpolation != INTERPOLATE_LINEAR_RGB
+          && interpolation != INTERPOLATE_LAB) {
+            throw new IllegalArgumentException("Invalid gradient interpolation: " + interpolation);
+        }
+
+        if (resolution < 2 || resolution > 65536) {
+            throw new IllegalArgumentException("Invalid gradient resolution: " + resolution);
+        }
+
+        return new Gradient(new ArrayList<>(stops), interpolation, resolution);
+    }
+
+    private final @NotNull List<Stop> stops;
+    private final @NotNull Option interpolation;
+    private final @NotNull int[] table;
+    private final float scale;  // maps a position to a table index
+
+    private Gradient(@NotNull List<Stop> stops, @NotNull Option interpolation, int resolution)
+    {
+        this.stops = Collections.unmodifiableList(stops);
+        this.interpolation = interpolation;
+        this.table = new int[resolution];
+        this.scale = resolution - 1;
+
+        // Convert the stop colors to the interpolation space
+
+        int count = stops.size();
+        float[] components = new float[count * 4];
+        for (int i = 0; i < count; i++) {
+            ColorDescription c = stops.get(i).color;
+            int base = i * 4;
+            components[base] = c.getRed();
+            components[base + 1] = c.getGreen();
+            components[base + 2] = c.getBlue();
+            components[base + 3] = c.getAlpha();
+        }
+        if (interpolation == INTERPOLATE_LINEAR_RGB) {
+            ColorConversion.rgbaToLinear(components, 0, components, 0, count);
+        } else if (interpolation == INTERPOLATE_LAB) {
+            ColorConversion.rgbaToLab(components, 0, components, 0, count);
+        }
+
+        // Interpolate each table entry, then convert back to sRGB
+
+        float[] entries = new float[resolution * 4];
+        int stop = 0;
+        for (int i = 0; i < resolution; i++) {
+            float position = i / scale;
+            while (stop < count && stops.get(stop).position <= position) {
+                stop++;
+            }
+            int base = i * 4;
+            if (stop == 0 || stop == count) {
+                System.arraycopy(components, stop == 0 ? 0 : (count - 1) * 4, entries, base, 4);
+            } else {
+                float p0 = stops.get(stop - 1).position;
+                float p1 = stops.get(stop).position;
+                float f = (position - p0) / (p1 - p0);
+                for (int k = 0; k < 4; k++) {
+                    float c0 = components[(stop - 1) * 4 + k];
+                    float c1 = components[stop * 4 + k];
+                    entries[base + k] = c0 + (c1 - c0) * f;
+                }
+            }
+        }
+        if (interpolation == INTERPOLATE_LINEAR_RGB) {
+            ColorConversion.linearToArgb(entries, 0, table, 0, resolution);
+        } else {
+            if (interpolation == INTERPOLATE_LAB) {
+                ColorConversion.labToRgba(entries, 0, entries, 0, resolution);
+            }
+            ColorConversion.rgbaToArgb(entries, 0, table, 0, resolution);
+        }
+    }
+
+    public @NotNull List<Stop> getStops()
+    {
+        return stops;
+    }
+
+    public @NotNull Option getInterpolation()
+    {
+        return interpolation;
+    }
+
+    public int getResolution()
+    {
+        return table.length;
+    }
+
+    /**
+      Return the color at a position.
+      @param position The position. Positions outside the range 0 to 1 are clamped.
+      @return the color, packed as defined by {@link PackedColor}.
+    */
+
+    public int getColor(float position)
+    {
+        return table[index(position)];
+    }
+
+    /**
+      Return the color at a position.
+      @param position The position. Positions outside the range 0 to 1 are clamped.
+    */
+
+    public @NotNull ColorDescription getColorDescription(float position)
+    {
+        return ColorDescription.fromArgb(getColor(position));
+    }
+
+    /**
+      Fill a horizontal span of pixels with a linear gradient. The gradient runs from position 0 at the start point to
+      position 1 at the end point, and is constant along lines perpendicular to the line between them. Pixels are
+      sampled at their centers.
+      @param target The pixels.
+      @param offset The index in {@code target} of the first pixel.
+      @param count The number of pixels.
+      @param x The X coordinate of the first pixel.
+      @param y The Y coordinate of the span.
+      @param x0 The X coordinate of the start point.
+      @param y0 The Y coordinate of the start point.
+      @param x1 The X coordinate of the end point.
+      @param y1 The Y coordinate of the end point.
+    */
+
+    public void fillLinear(@NotNull int[] target, int offset, int count, int x, int y,
+                           float x0, float y0, float x1, float y1)
+    {
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        float lengthSquared = dx * dx + dy * dy;
+        if (lengthSquared == 0) {
+            int c = table[table.length - 1];
+            for (int i = 0; i < count; i++) {
+                target[offset + i] = c;
+            }
+            return;
+        }
+
+        // The table index is a linear function of the pixel position, so it is computed incrementally
+
+        float step = dx / lengthSquared * scale;
+        float t = ((x + 0.5f - x0) * dx + (y + 0.5f - y0) * dy) / lengthSquared * scale;
+        for (int i = 0; i < count; i++) {
+            target[offset + i] = table[scaledIndex(t)];
+            t += step;
+        }
+    }
+
+    /**
+      Fill a horizontal span of pixels with a radial gradient. The gradient runs from position 0 at the center to
+      position 1 at the specified radius. Pixels are sampled at their centers.
+      @param target The pixels.
+      @param offset The index in {@code target} of the first pixel.
+      @param count The number of pixels.
+      @param x The X coordinate of the first pixel.
+      @param y The Y coordinate of the span.
+      @param cx The X coordinate of the center.
+      @param cy The Y coordinate of the center.
+      @param radius The radius.
+    */
+
+    public void fillRadial(@NotNull int[] target, int offset, int count, int x, int y,
+                           float cx, float cy, float radius)
+    {
+        if (!(radius > 0)) {
+            int c = table[table.length - 1];
+            for (int i = 0; i < count; i++) {
+                target[offset + i] = c;
+            }
+            return;
+        }
+
+        float factor = scale / radius;
+        float ry = y + 0.5f - cy;
+        float ry2 = ry * ry;
+        float rx = x + 0.5f - cx;
+        for (int i = 0; i < count; i++) {
+            target[offset + i] = table[scaledIndex((float) Math.sqrt(rx * rx + ry2) * factor)];
+            rx += 1;
+        }
+    }
+
+    private int index(float position)
+    {
+        return scaledIndex(position * scale);
+    }
+
+    private int scaledIndex(float t)
+    {
+        if (!(t > 0)) {
+            return 0;  // includes NaN
+        }
+        if (t >= scale) {
+            return table.length - 1;
+        }
+        return (int) (t + 0.5f);
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        return "Gradient{" +
+                 "stops=" + stops +
+                 ", interpolation=" + interpolation +
+                 ", resolution=" + table.length +
+                 '}';
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A memory-bounded cache of scaled variants of images. The image representation is defined by the client, which
+  supplies the scaling operation, so the cache can be used with platform images or with raw pixel data.
+  <p>
+  Scaled variants are derived from a pyramid of reduced images, each half the size of the previous one, starting with
+  the source image. A requested variant is produced by scaling the smallest pyramid level that is at least as large as
+  the requested size; pyramid levels are cached and are themselves produced from the next larger cached level.
+  This avoids repeatedly scaling large source images, and preserves quality by never reducing by more than half in
+  one step when producing a level.
+  <p>
+  Variants are cached by source and target size. Because the target size is computed using the scaling option, requests
+  that use different scaling options but produce the same size share the same variant. When the total memory size of
+  the cached images exceeds the limit, the least recently used images are discarded.
+  <p>
+  This class is thread safe. Images are scaled without holding the cache lock, so requests from different threads
+  may scale images concurrently. If two threads produce the same variant at the same time, the first one cached is
+  returned to both.
+
+  @param <I> The image type.
+*/
+
+public final class ImagePyramidCache<I>
+{
+    /**
+      The operations on images needed by the cache.
+      @param <I> The image type.
+    */
+
+    public interface Scaler<I>
+    {
+        int getWidth(@NotNull I image);
+
+        int getHeight(@NotNull I image);
+
+        /**
+          Create a scaled copy of an image.
+          @param image The image.
+          @param width The width of the scaled image.
+          @param height The height of the scaled image.
+          @return the scaled image.
+        */
+
+        @NotNull I scale(@NotNull I image, int width, int height);
+
+        /**
+          Return the approximate number of bytes of memory used by an image. The default implementation assumes 4
+          bytes per pixel.
+        */
+
+        default long getMemorySize(@NotNull I image)
+        {
+            return 4L * getWidth(image) * getHeight(image);
+        }
+    }
+
+    /**
+      Create an image cache.
+      @param scaler The image operations.
+      @param memoryLimit The maximum total memory size of the cached images, in bytes.
+      @throws IllegalArgumentException if {@code memoryLimit} is negative.
+    */
+
+    public static <I> @NotNull ImagePyramidCache<I> create(@NotNull Scaler<I> scaler, long memoryLimit)
+      throws IllegalArgumentException
+    {
+        if (memoryLimit < 0) {
+            throw new IllegalArgumentException("Invalid memory limit: " + memoryLimit);
+        }
+        return new ImagePyramidCache<>(scaler, memoryLimit);
+    }
+
+    private final @NotNull Scaler<I> scaler;
+    private final long memoryLimit;
+    private final @NotNull LinkedHashMap<Key,Entry<I>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memorySize;
+    private long hits;
+    private long misses;
+
+    private static final class Key
+    {
+        final @NotNull Object source;
+        final int width;
+        final int height;
+
+        Key(@NotNull Object source, int width, int height)
+        {
+            this.source = source;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return width == that.width && height == that.height && source.equals(that.source);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = source.hashCode();
+            result = 31 * result + width;
+            result = 31 * result + height;
+            return result;
+        }
+    }
+
+    private static final class Entry<I>
+    {
+        final @NotNull I image;
+        final long memorySize;
+
+        Entry(@NotNull I image, long memorySize)
+        {
+            this.image = image;
+            this.memorySize = memorySize;
+        }
+    }
+
+    private ImagePyramidCache(@NotNull Scaler<I> scaler, long memoryLimit)
+    {
+        this.scaler = scaler;
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+      Return a scaled variant of an image.
+      @param sourceKey An object that identifies the source image. Equal keys must identify equal source images.
+      @param source The source image.
+      @param option The scaling option.
+      @param available The available space.
+      @return the source image scaled according to {@code option} to fit {@code available}. The source image is
+      returned if no scaling is needed. The width and height of the scaled image are at least one, even if the
+      available space is empty or the scaling option would reduce a dimension to zero.
+    */
+
+    public @NotNull I get(@NotNull Object sourceKey,
+                          @NotNull I source,
+                          @NotNull ScalingOption option,
+                          @NotNull Size available)
+    {
+        int sourceWidth = scaler.getWidth(source);
+        int sourceHeight = scaler.getHeight(source);
+        long target = option.fit(sourceWidth, sourceHeight, available.width, available.height);
+        int width = Math.max(1, PackedSize.width(target));
+        int height = Math.max(1, PackedSize.height(target));
+        return get(sourceKey, source, width, height);
+    }
+
+    /**
+      Return a scaled variant of an image.
+      @param sourceKey An object that identifies the source image. Equal keys must identify equal source images.
+      @param source The source image.
+      @param width The width of the scaled image.
+      @param height The height of the scaled image.
+      @return the source image scaled to the specified size. The source image is returned if it has the specified size.
+      @throws IllegalArgumentException if {@code width} or {@code height} is not positive.
+    */
+
+    public @NotNull I get(@NotNull Object sourceKey, @NotNull I source, int width, int height)
+      throws IllegalArgumentException
+    {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+        }
+
+        int sourceWidth = scaler.getWidth(source);
+        int sourceHeight = scaler.getHeight(source);
+        if (width == sourceWidth && height == sourceHeight) {
+            return source;
+        }
+
+        Key key = new Key(sourceKey, width, height);
+
+        // Find the smallest pyramid level that is at least as large as the target
+
+        int level = 0;
+        while (levelSize(sourceWidth, level + 1) >= width && levelSize(sourceHeight, level + 1) >= height
+          && (levelSize(sourceWidth, level + 1) < levelSize(sourceWidth, level)
+            || levelSize(sourceHeight, level + 1) < levelSize(sourceHeight, level))) {
+            level++;
+        }
+
+        // Find the nearest cached level at or above that level
+
+        I image = source;
+        int cachedLevel = 0;
+        synchronized (this) {
+            Entry<I> e = entries.get(key);
+            if (e != null) {
+                hits++;
+                return e.image;
+            }
+            misses++;
+
+            for (int k = level; k > 0; k--) {
+                Entry<I> le = entries.get(new Key(sourceKey, levelSize(sourceWidth, k), levelSize(sourceHeight, k)));
+                if (le != null) {
+                    image = le.image;
+                    cachedLevel = k;
+                    break;
+                }
+            }
+        }
+
+        // Build the missing levels below it, scaling without holding the lock
+
+        for (int k = cachedLevel + 1; k <= level; k++) {
+            int levelWidth = levelSize(sourceWidth, k);
+            int levelHeight = levelSize(sourceHeight, k);
+            image = install(new Key(sourceKey, levelWidth, levelHeight), scaler.scale(image, levelWidth, levelHeight));
+        }
+
+        if (scaler.getWidth(image) == width && scaler.getHeight(image) == height) {
+            return image;
+        }
+        return install(key, scaler.scale(image, width, height));
+    }
+
+    /**
+      Discard all cached variants of a source image.
+    */
+
+    public synchronized void remove(@NotNull Object sourceKey)
+    {
+        Iterator<Map.Entry<Key,Entry<I>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key,Entry<I>> e = it.next();
+            if (e.getKey().source.equals(sourceKey)) {
+                memorySize -= e.getValue().memorySize;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+      Discard all cached images.
+    */
+
+    public synchronized void clear()
+    {
+        entries.clear();
+        memorySize = 0;
+    }
+
+    /**
+      Return the total memory size of the cached images, in bytes.
+    */
+
+    public synchronized long getMemorySize()
+    {
+        return memorySize;
+    }
+
+    public long getMemoryLimit()
+    {
+        return memoryLimit;
+    }
+
+    /**
+      Return statistics on requests for scaled variants. Requests that are satisfied by the source image are not
+      counted.
+    */
+
+    public synchronized @NotNull CacheStatistics getStatistics()
+    {
+        return CacheStatistics.create(hits, misses);
+    }
+
+    /**
+      Cache an image unless an image with the same key has already been cached by another thread.
+      @return the cached image.
+    */
+
+    private synchronized @NotNull I install(@NotNull Key key, @NotNull I image)
+    {
+        Entry<I> existing = entries.get(key);
+        if (existing != null) {
+            return existing.image;
+        }
+        long size = scaler.getMemorySize(image);
+        if (size > memoryLimit) {
+            return image;
+        }
+        entries.put(key, new Entry<>(image, size));
+        memorySize += size;
+
+        Iterator<Entry<I>> it = entries.values().iterator();
+        while (memorySize > memoryLimit && it.hasNext()) {
+            Entry<I> e = it.next();
+            memorySize -= e.memorySize;
+            it.remove();
+        }
+        return image;
+    }
+
+    private static int levelSize(int size, int level)
+    {
+        return Math.max(1, size >> level);
+    }
+
+    @Override
+    public synchronized @NotNull String toString()
+    {
+        return "ImagePyramidCache{" +
+                 "images=" + entries.size() +
+                 ", memorySize=" + memorySize +
+                 ", memoryLimit=" + memoryLimit +
+                 '}';
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+/**
+  A comparison of two elements of an indexed collection, identified by their indexes. Used to sort collections of
+  primitive values without creating an object for each element.
+*/
+
+public interface IndexComparator
+{
+    /**
+      Compare two elements.
+      @param i The index of the first element.
+      @param j The index of the second element.
+      @return a negative value, zero, or a positive value if the first element is less than, equal to, or greater than
+      the second element.
+    */
+
+    int compare(int i, int j);
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import org.jetbrains.annotations.*;
+
+/**
+  Support for sorting collections whose elements are stored as fixed-length groups of consecutive integers.
+*/
+
+final class IndexSort
+{
+    /**
+      Sort the elements of an array of integer groups. The sort is stable.
+      @param data The array containing the elements.
+      @param count The number of elements.
+      @param stride The number of integers in each element.
+      @param c The comparator, which is called with the indexes of elements in their original (unsorted) order.
+      @return a new array containing the sorted elements, with the same length as {@code data}.
+    */
+
+    static @NotNull int[] sort(@NotNull int[] data, int count, int stride, @NotNull IndexComparator c)
+    {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[count], 0, count, c);
+
+        int[] result = new int[data.length];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(data, order[i] * stride, result, i * stride, stride);
+        }
+        return result;
+    }
+
+    private static void mergeSort(@NotNull int[] a, @NotNull int[] temp, int from, int to, @NotNull IndexComparator c)
+    {
+        int length = to - from;
+        if (length < 16) {
+            for (int i = from + 1; i < to; i++) {
+                int value = a[i];
+                int j = i - 1;
+                while (j >= from && c.compare(a[j], value) > 0) {
+                    a[j + 1] = a[j];
+                    j--;
+                }
+                a[j + 1] = value;
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        mergeSort(a, temp, from, middle, c);
+        mergeSort(a, temp, middle, to, c);
+
+        if (c.compare(a[middle - 1], a[middle]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(a, from, temp, from, length);
+        int i = from;
+        int j = middle;
+        int k = from;
+        while (i < middle && j < to) {
+            a[k++] = c.compare(temp[j], temp[i]) < 0 ? temp[j++] : temp[i++];
+        }
+        while (i < middle) {
+            a[k++] = temp[i++];
+        }
+        while (j < to) {
+            a[k++] = temp[j++];
+        }
+    }
+
+    /**
+      Return a new capacity, in elements, that is at least the specified minimum.
+    */
+
+    static int grow(int currentCapacity, int minimumCapacity)
+    {
+        int capacity = currentCapacity + (currentCapacity >> 1) + 1;
+        if (capacity < minimumCapacity || capacity < 0) {
+            capacity = minimumCapacity;
+        }
+        return capacity;
+    }
+
+    private IndexSort()
+    {
+    }
+}
@@ -8,8 +8,6 @@
 
 package org.violetlib.types;
 
-import java.util.Objects;
-
 import org.jetbrains.annotations.*;
 import org.violetlib.annotations.Immutable;
 import org.violetlib.annotations.Value;
@@ -37,6 +35,12 @@ public final @Immutable @Value class InsetDescription
             return ZERO;
         }
 
+        if (top < CACHE_LIMIT && left < CACHE_LIMIT && bottom < CACHE_LIMIT && right < CACHE_LIMIT) {
+            int index = ((top * CACHE_LIMIT + left) * CACHE_LIMIT + bottom) * CACHE_LIMIT + right;
+            InsetDescription d = CACHE.get(index);
+            return d != null ? d : CACHE.install(index, new InsetDescription(top, left, bottom, right));
+        }
+
         return new InsetDescription(top, left, bottom, right);
     }
 
@@ -55,9 +59,29 @@ public final @Immutable @Value class InsetDescription
             return ZERO;
         }
 
+        if (n < CACHE_LIMIT) {
+            return create(n, n, n, n);
+        }
+
         return new InsetDescription(n);
     }
 
+    /**
+      Return statistics on the use of canonical instances by the {@code create} methods. Only insets in the
+      canonicalized range are counted. Statistics are recorded only if the system property
+      {@code org.violetlib.types.recordCacheStatistics} is {@code true}; otherwise the counts are zero.
+    */
+
+    public static @NotNull CacheStatistics getCacheStatistics()
+    {
+        return CACHE.getStatistics();
+    }
+
+    // Insets whose components are all less than this limit are canonicalized
+    private static final int CACHE_LIMIT = 8;
+    private static final @NotNull ValueTable<InsetDescription> CACHE
+      = new ValueTable<>(CACHE_LIMIT * CACHE_LIMIT * CACHE_LIMIT * CACHE_LIMIT);
+
     private final int top;
     private final int left;
     private final int bottom;
@@ -119,7 +143,7 @@ public final @Immutable @Value class InsetDescription
         if (d.isZero()) {
             return this;
         }
-        return new InsetDescription(top + d.getTop(), left + d.getLeft(), bottom + d.getBottom(), right + d.getRight());
+        return create(top + d.getTop(), left + d.getLeft(), bottom + d.getBottom(), right + d.getRight());
     }
 
     @Override
@@ -134,7 +158,11 @@ public final @Immutable @Value class InsetDescription
     @Override
     public int hashCode()
     {
-        return Objects.hash(top, left, bottom, right);
+        int result = top;
+        result = 31 * result + left;
+        result = 31 * result + bottom;
+        result = 31 * result + right;
+        return result;
     }
 
     @Override
@@ -0,0 +1,548 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A node in a tree of boxes to be laid out. A leaf node has a preferred size. A container node arranges its children
+  in a row or a column, in the manner of a simple flexible box layout:
+  <ul>
+  <li>Along the main axis, each child receives its preferred size plus its margins, and the children are separated
+  by the container spacing. Extra space is distributed to the children in proportion to their grow factors. If there
+  is too little space, the children are reduced in proportion to their preferred sizes.</li>
+  <li>Along the cross axis, the children are positioned according to the container alignment.</li>
+  </ul>
+  The bounds of a node are relative to the origin of the bounds of its parent.
+  <p>
+  Layout is incremental. The preferred size of a node is cached until the node or one of its descendants changes.
+  A node arranges its children again only if its size has changed or the node or one of its descendants has changed;
+  otherwise its entire subtree is skipped. Moving a node does not require its subtree to be laid out again, because
+  bounds are relative.
+  <p>
+  This class is not thread safe.
+*/
+
+public final class LayoutNode
+{
+    /**
+      Align children with the start of the cross axis (the top of a row, or the left side of a column).
+    */
+
+    public static final @NotNull Option ALIGN_START = Option.named("Start");
+
+    /**
+      Center children on the cross axis.
+    */
+
+    public static final @NotNull Option ALIGN_CENTER = Option.named("Center");
+
+    /**
+      Align children with the end of the cross axis (the bottom of a row, or the right side of a column).
+    */
+
+    public static final @NotNull Option ALIGN_END = Option.named("End");
+
+    /**
+      Stretch children to fill the cross axis.
+    */
+
+    public static final @NotNull Option ALIGN_STRETCH = Option.named("Stretch");
+
+    /**
+      Create a leaf node.
+      @param preferredSize The preferred size of the node.
+    */
+
+    public static @NotNull LayoutNode createLeaf(@NotNull Size preferredSize)
+    {
+        LayoutNode n = new LayoutNode(false, false);
+        n.preferredSize = preferredSize;
+        return n;
+    }
+
+    /**
+      Create a container node that arranges its children horizontally.
+    */
+
+    public static @NotNull LayoutNode createRow()
+    {
+        return new LayoutNode(true, true);
+    }
+
+    /**
+      Create a container node that arranges its children vertically.
+    */
+
+    public static @NotNull LayoutNode createColumn()
+    {
+        return new LayoutNode(true, false);
+    }
+
+    private final boolean isContainer;
+    private final boolean isHorizontal;
+    private final @NotNull List<LayoutNode> children = new ArrayList<>();
+    private @Nullable LayoutNode parent;
+    private @Nullable Size preferredSize;  // specified preferred size, overrides the measured size of a container
+    private @NotNull InsetDescription margin = InsetDescription.zero();
+    private @NotNull InsetDescription padding = InsetDescription.zero();
+    private float grow;
+    private int spacing;
+    private @NotNull Option alignment = ALIGN_START;
+
+    // Invariant: if a node is not valid, then its ancestors are not valid
+    private @Nullable Size measuredSize;  // the cached preferred size, or null if not valid
+    private boolean isLayoutValid;
+    private @NotNull Bounds bounds = Bounds.create(0, 0, 0, 0);
+
+    private LayoutNode(boolean isContainer, boolean isHorizontal)
+    {
+        this.isContainer = isContainer;
+        this.isHorizontal = isHorizontal;
+    }
+
+    public boolean isContainer()
+    {
+        return isContainer;
+    }
+
+    /**
+      Return true if this node is a container that arranges its children horizontally.
+    */
+
+    public boolean isHorizontal()
+    {
+        return isHorizontal;
+    }
+
+    public @Nullable LayoutNode getParent()
+    {
+        return parent;
+    }
+
+    public @NotNull List<LayoutNode> getChildren()
+    {
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+      Add a child at the end of this container.
+      @throws IllegalArgumentException if this node is not a container, or if {@code child} already has a parent or
+      is an ancestor of this node.
+    */
+
+    public void add(@NotNull LayoutNode child)
+      throws IllegalArgumentException
+    {
+        add(children.size(), child);
+    }
+
+    /**
+      Add a child to this container.
+      @throws IllegalArgumentException if this node is not a container, or if {@code child} already has a parent or
+      is an ancestor of this node.
+      @throws IndexOutOfBoundsException if {@code index} is negative or greater than the number of children.
+    */
+
+    public void add(int index, @NotNull LayoutNode child)
+      throws IllegalArgumentException, IndexOutOfBoundsException
+    {
+        if (!isContainer) {
+            throw new IllegalArgumentException("A leaf node cannot have children");
+        }
+        if (child.parent != null) {
+            throw new IllegalArgumentException("Node already has a parent");
+        }
+        for (LayoutNode n = this; n != null; n = n.parent) {
+            if (n == child) {
+                throw new IllegalArgumentException("Node cannot be added to itself or a descendant");
+            }
+        }
+        children.add(index, child);
+        child.parent = this;
+        invalidate();
+    }
+
+    /**
+      Remove a child from this container.
+      @return true if {@code child} was a child of this node.
+    */
+
+    public boolean remove(@NotNull LayoutNode child)
+    {
+        if (child.parent == this && children.remove(child)) {
+            child.parent = null;
+            invalidate();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+      Return the specified preferred size. For a container, this is null unless a preferred size has been specified
+      to override the size computed from the children.
+    */
+
+    public @Nullable Size getSpecifiedPreferredSize()
+    {
+        return preferredSize;
+    }
+
+    /**
+      Specify the preferred size of this node.
+      @param size The preferred size. For a container, null indicates that the preferred size should be computed from
+      the children.
+      @throws IllegalArgumentException if {@code size} is null and this node is a leaf.
+    */
+
+    public void setPreferredSize(@Nullable Size size)
+      throws IllegalArgumentException
+    {
+        if (size == null && !isContainer) {
+            throw new IllegalArgumentException("A leaf node must have a preferred size");
+        }
+        if (!Objects.equals(size, preferredSize)) {
+            preferredSize = size;
+            invalidate();
+        }
+    }
+
+    public @NotNull InsetDescription getMargin()
+    {
+        return margin;
+    }
+
+    /**
+      Specify the space around this node that separates it from the edges of its parent and from its siblings.
+    */
+
+    public void setMargin(@NotNull InsetDescription margin)
+    {
+        if (!margin.equals(this.margin)) {
+            this.margin = margin;
+            invalidate();
+        }
+    }
+
+    public @NotNull InsetDescription getPadding()
+    {
+        return padding;
+    }
+
+    /**
+      Specify the space between the edges of this container and its children.
+    */
+
+    public void setPadding(@NotNull InsetDescription padding)
+    {
+        if (!padding.equals(this.padding)) {
+            this.padding = padding;
+            invalidate();
+        }
+    }
+
+    public float getGrow()
+    {
+        return grow;
+    }
+
+    /**
+      Specify the share of extra space along the main axis of the parent that this node receives.
+      @throws IllegalArgumentException if {@code grow} is negative or not finite.
+    */
+
+    public void setGrow(float grow)
+      throws IllegalArgumentException
+    {
+        if (!(grow >= 0 && grow < Float.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("Invalid grow factor: " + grow);
+        }
+        if (grow != this.grow) {
+            this.grow = grow;
+            invalidate();
+        }
+    }
+
+    public int getSpacing()
+    {
+        return spacing;
+    }
+
+    /**
+      Specify the space between adjacent children of this container.
+      @throws IllegalArgumentException if {@code spacing} is negative.
+    */
+
+    public void setSpacing(int spacing)
+      throws IllegalArgumentException
+    {
+        if (spacing < 0) {
+            throw new IllegalArgumentException("Invalid spacing: " + spacing);
+        }
+        if (spacing != this.spacing) {
+            this.spacing = spacing;
+            invalidate();
+        }
+    }
+
+    public @NotNull Option getAlignment()
+    {
+        return alignment;
+    }
+
+    /**
+      Specify the alignment of the children of this container on the cross axis.
+      @param alignment The alignment: {@link #ALIGN_START}, {@link #ALIGN_CENTER}, {@link #ALIGN_END}, or
+      {@link #ALIGN_STRETCH}.
+      @throws IllegalArgumentException if {@code alignment} is not valid.
+    */
+
+    public void setAlignment(@NotNull Option alignment)
+      throws IllegalArgumentException
+    {
+        if (alignment != ALIGN_START && alignment != ALIGN_CENTER && alignment != ALIGN_END
+          && alignment != ALIGN_STRETCH) {
+            throw new IllegalArgumentException("Invalid alignment: " + alignment);
+        }
+        if (alignment != this.alignment) {
+            this.alignment = alignment;
+            invalidate();
+        }
+    }
+
+    /**
+      Indicate that the content of this node has changed, so that it must be measured and laid out again. The
+      properties of this class invalidate the node automatically when they are changed.
+    */
+
+    public void invalidate()
+    {
+        for (LayoutNode n = this; n != null && (n.measuredSize != null || n.isLayoutValid); n = n.parent) {
+            n.measuredSize = null;
+            n.isLayoutValid = false;
+        }
+    }
+
+    /**
+      Return the preferred size of this node, excluding its margin.
+    */
+
+    public @NotNull Size getPreferredSize()
+    {
+        Size s = measuredSize;
+        if (s == null) {
+            s = measure();
+            measuredSize = s;
+        }
+        return s;
+    }
+
+    /**
+      Return true if this node and its descendants have been laid out and have not changed since.
+    */
+
+    public boolean isLayoutValid()
+    {
+        return isLayoutValid;
+    }
+
+    /**
+      Return the bounds of this node, relative to the origin of the bounds of its parent.
+    */
+
+    public @NotNull Bounds getBounds()
+    {
+        return bounds;
+    }
+
+    /**
+      Return the bounds of this node, relative to the origin of the bounds of the root node.
+    */
+
+    public @NotNull Bounds getAbsoluteBounds()
+    {
+        int x = bounds.x;
+        int y = bounds.y;
+        for (LayoutNode n = parent; n != null; n = n.parent) {
+            x += n.bounds.x;
+            y += n.bounds.y;
+        }
+        return Bounds.create(x, y, bounds.width, bounds.height);
+    }
+
+    /**
+      Lay out this node and its descendants. This method is normally called on the root node; the bounds of other
+      nodes are assigned by their parents.
+      @param bounds The bounds of this node.
+    */
+
+    public void layout(@NotNull Bounds bounds)
+    {
+        setBounds(bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+    private void setBounds(int x, int y, int width, int height)
+    {
+        Bounds old = this.bounds;
+        if (old.x != x || old.y != y || old.width != width || old.height != height) {
+            this.bounds = Bounds.create(x, y, width, height);
+            if (old.width != width || old.height != height) {
+                isLayoutValid = false;
+            }
+        }
+        if (!isLayoutValid) {
+            arrange();
+            isLayoutValid = true;
+        }
+    }
+
+    private @NotNull Size measure()
+    {
+        if (preferredSize != null) {
+            return preferredSize;
+        }
+
+        int main = 0;
+        int cross = 0;
+        for (LayoutNode child : children) {
+            Size s = child.getPreferredSize();
+            InsetDescription m = child.margin;
+            main += mainSize(s) + (isHorizontal ? m.getWidth() : m.getHeight());
+            cross = Math.max(cross, crossSize(s) + (isHorizontal ? m.getHeight() : m.getWidth()));
+        }
+        if (children.size() > 1) {
+            main += spacing * (children.size() - 1);
+        }
+        return isHorizontal
+          ? Size.create(main + padding.getWidth(), cross + padding.getHeight())
+          : Size.create(cross + padding.getWidth(), main + padding.getHeight());
+    }
+
+    private void arrange()
+    {
+        int count = children.size();
+        if (count == 0) {
+            return;
+        }
+
+        int availableMain = Math.max(0, isHorizontal
+          ? bounds.width - padding.getWidth()
+          : bounds.height - padding.getHeight());
+        int availableCross = Math.max(0, isHorizontal
+          ? bounds.height - padding.getHeight()
+          : bounds.width - padding.getWidth());
+
+        // Determine the main axis sizes
+
+        int[] sizes = new int[count];
+        int fixed = spacing * (count - 1);
+        int preferred = 0;
+        float totalGrow = 0;
+        for (int i = 0; i < count; i++) {
+            LayoutNode child = children.get(i);
+            sizes[i] = mainSize(child.getPreferredSize());
+            preferred += sizes[i];
+            fixed += mainStart(child.margin) + mainEnd(child.margin);
+            totalGrow += child.grow;
+        }
+        int extra = availableMain - fixed - preferred;
+        if (extra > 0 && totalGrow > 0) {
+            distribute(sizes, extra, totalGrow, true);
+        } else if (extra < 0 && preferred > 0) {
+            distribute(sizes, Math.max(extra, -preferred), preferred, false);
+        }
+
+        // Assign the bounds
+
+        int position = isHorizontal ? padding.getLeft() : padding.getTop();
+        int crossStart = isHorizontal ? padding.getTop() : padding.getLeft();
+        for (int i = 0; i < count; i++) {
+            LayoutNode child = children.get(i);
+            InsetDescription m = child.margin;
+            position += mainStart(m);
+            int crossMargin = isHorizontal ? m.getHeight() : m.getWidth();
+            int crossSpace = Math.max(0, availableCross - crossMargin);
+            int crossSize;
+            int crossOffset;
+            if (alignment == ALIGN_STRETCH) {
+                crossSize = crossSpace;
+                crossOffset = 0;
+            } else {
+                crossSize = Math.min(crossSize(child.getPreferredSize()), crossSpace);
+                crossOffset = alignment == ALIGN_START ? 0
+                  : alignment == ALIGN_END ? crossSpace - crossSize
+                  : (crossSpace - crossSize) / 2;
+            }
+            int crossPosition = crossStart + (isHorizontal ? m.getTop() : m.getLeft()) + crossOffset;
+            if (isHorizontal) {
+                child.setBounds(position, crossPosition, sizes[i], crossSize);
+            } else {
+                child.setBounds(crossPosition, position, crossSize, sizes[i]);
+            }
+            position += sizes[i] + mainEnd(m) + spacing;
+        }
+    }
+
+    /**
+      Adjust sizes by an amount distributed in proportion to weights. Cumulative rounding is used so that the
+      adjustments sum exactly to the amount.
+      @param sizes The sizes to adjust.
+      @param amount The total adjustment.
+      @param totalWeight The sum of the weights.
+      @param isGrowing True to use the grow factors as the weights, false to use the sizes.
+    */
+
+    private void distribute(@NotNull int[] sizes, int amount, float totalWeight, boolean isGrowing)
+    {
+        double cumulativeWeight = 0;
+        int assigned = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            cumulativeWeight += isGrowing ? children.get(i).grow : sizes[i];
+            int target = (int) Math.round(amount * cumulativeWeight / totalWeight);
+            sizes[i] = Math.max(0, sizes[i] + target - assigned);
+            assigned = target;
+        }
+    }
+
+    private int mainSize(@NotNull Size s)
+    {
+        return isHorizontal ? s.width : s.height;
+    }
+
+    private int crossSize(@NotNull Size s)
+    {
+        return isHorizontal ? s.height : s.width;
+    }
+
+    private int mainStart(@NotNull InsetDescription m)
+    {
+        return isHorizontal ? m.getLeft() : m.getTop();
+    }
+
+    private int mainEnd(@NotNull InsetDescription m)
+    {
+        return isHorizontal ? m.getRight() : m.getBottom();
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        String kind = isContainer ? (isHorizontal ? "Row" : "Column") : "Leaf";
+        return "LayoutNode{" +
+                 kind +
+                 ", bounds=" + bounds +
+                 ", children=" + children.size() +
+                 '}';
+    }
+}
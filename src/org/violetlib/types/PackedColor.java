@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import org.jetbrains.annotations.*;
+
+/**
+  Operations on colors packed into primitive values, for use by code that processes large numbers of colors.
+  <p>
+  The 32-bit ARGB form stores 8-bit components in an {@code int}: alpha in bits 24-31, red in bits 16-23, green in bits
+  8-15, and blue in bits 0-7. Components are not premultiplied by alpha.
+  <p>
+  The 64-bit half-float form stores 16-bit IEEE 754 half precision floating point components in a {@code long}:
+  alpha in bits 48-63, red in bits 32-47, green in bits 16-31, and blue in bits 0-15. This form preserves component
+  values outside the range 0 to 1 and has more precision than the 32-bit form.
+*/
+
+public final class PackedColor
+{
+    public static int argb(int red, int green, int blue, int alpha)
+    {
+        return (alpha & 0xFF) << 24 | (red & 0xFF) << 16 | (green & 0xFF) << 8 | (blue & 0xFF);
+    }
+
+    /**
+      Pack floating point components. Components are clamped to the range 0 to 1 and rounded.
+    */
+
+    public static int argb(float red, float green, float blue, float alpha)
+    {
+        return toByte(alpha) << 24 | toByte(red) << 16 | toByte(green) << 8 | toByte(blue);
+    }
+
+    public static int alpha(int argb)
+    {
+        return argb >>> 24;
+    }
+
+    public static int red(int argb)
+    {
+        return (argb >> 16) & 0xFF;
+    }
+
+    public static int green(int argb)
+    {
+        return (argb >> 8) & 0xFF;
+    }
+
+    public static int blue(int argb)
+    {
+        return argb & 0xFF;
+    }
+
+    public static int fromColor(@NotNull ColorDescription c)
+    {
+        return c.toArgb();
+    }
+
+    public static @NotNull ColorDescription toColor(int argb)
+    {
+        return ColorDescription.fromArgb(argb);
+    }
+
+    /**
+      Convert colors to the 32-bit form.
+      @param source The colors.
+      @param sourceOffset The index of the first color to convert.
+      @param target The array to receive the packed colors.
+      @param targetOffset The index in {@code target} of the first packed color.
+      @param count The number of colors to convert.
+    */
+
+    public static void fromColors(@NotNull ColorDescription[] source, int sourceOffset,
+                                  @NotNull int[] target, int targetOffset, int count)
+    {
+        for (int i = 0; i < count; i++) {
+            target[targetOffset + i] = source[sourceOffset + i].toArgb();
+        }
+    }
+
+    /**
+      Convert colors from the 32-bit form. Runs of identical colors share a single instance.
+      @param source The packed colors.
+      @param sourceOffset The index of the first packed color to convert.
+      @param target The array to receive the colors.
+      @param targetOffset The index in {@code target} of the first color.
+      @param count The number of colors to convert.
+    */
+
+    public static void toColors(@NotNull int[] source, int sourceOffset,
+                                @NotNull ColorDescription[] target, int targetOffset, int count)
+    {
+        ColorDescription previous = null;
+        int previousArgb = 0;
+        for (int i = 0; i < count; i++) {
+            int argb = source[sourceOffset + i];
+            if (previous == null || argb != previousArgb) {
+                previous = ColorDescription.fromArgb(argb);
+                previousArgb = argb;
+            }
+            target[targetOffset + i] = previous;
+        }
+    }
+
+    /**
+      Convert a color to the 64-bit half-float form.
+    */
+
+    public static long toHalfFloat(@NotNull ColorDescription c)
+    {
+        return (long) (floatToHalf(c.getAlpha()) & 0xFFFF) << 48
+          | (long) (floatToHalf(c.getRed()) & 0xFFFF) << 32
+          | (long) (floatToHalf(c.getGreen()) & 0xFFFF) << 16
+          | (long) (floatToHalf(c.getBlue()) & 0xFFFF);
+    }
+
+    /**
+      Convert a color from the 64-bit half-float form.
+    */
+
+    public static @NotNull ColorDescription fromHalfFloat(long c)
+    {
+        return ColorDescription.color(halfToFloat((short) (c >>> 32)), halfToFloat((short) (c >>> 16)),
+          halfToFloat((short) c), halfToFloat((short) (c >>> 48)));
+    }
+
+    /**
+      Convert a 32-bit packed color to the 64-bit half-float form.
+    */
+
+    public static long argbToHalfFloat(int argb)
+    {
+        return (long) (floatToHalf(alpha(argb) / 255f) & 0xFFFF) << 48
+          | (long) (floatToHalf(red(argb) / 255f) & 0xFFFF) << 32
+          | (long) (floatToHalf(green(argb) / 255f) & 0xFFFF) << 16
+          | (long) (floatToHalf(blue(argb) / 255f) & 0xFFFF);
+    }
+
+    /**
+      Convert a float to a half precision float, rounding to nearest even.
+    */
+
+    public static short floatToHalf(float f)
+    {
+        int bits = Float.floatToRawIntBits(f);
+        short sign = (short) ((bits & 0x80000000) >> 16);
+        if (Float.isNaN(f)) {
+            return (short) (sign | 0x7C00 | (bits & 0x007FE000) >> 13 | (bits & 0x00001FF0) >> 4 | (bits & 0x0000000F));
+        }
+
+        float abs = Math.abs(f);
+        if (abs >= 0x1.ffcp15f + 0x0.002p15f) {
+            return (short) (sign | 0x7C00);  // infinity
+        }
+        if (abs <= 0x1.0p-24f * 0.5f) {
+            return sign;  // zero
+        }
+
+        int exponent = Math.getExponent(f);
+        int exponentDelta = 0;
+        int implicitBit = 0;
+        if (exponent < -14) {
+            // The result is subnormal
+            exponentDelta = -14 - exponent;
+            exponent = -15;
+            implicitBit = 0x00800000;
+        }
+        int significand = bits & 0x007FFFFF | implicitBit;
+        int result = significand >> (13 + exponentDelta);
+        int lsb = significand & (1 << 13 + exponentDelta);
+        int round = significand & (1 << 12 + exponentDelta);
+        int sticky = significand & ((1 << 12 + exponentDelta) - 1);
+        if (round != 0 && (lsb | sticky) != 0) {
+            result++;
+        }
+        return (short) (sign | (((exponent + 15) << 10) + result));
+    }
+
+    /**
+      Convert a half precision float to a float.
+    */
+
+    public static float halfToFloat(short h)
+    {
+        int signBit = 0x8000 & h;
+        int exponentBits = 0x7C00 & h;
+        int significandBits = 0x03FF & h;
+        float sign = signBit != 0 ? -1 : 1;
+        int exponent = (exponentBits >> 10) - 15;
+        if (exponent == -15) {
+            return sign * (0x1p-24f * significandBits);  // zero or subnormal
+        }
+        if (exponent == 16) {
+            return significandBits == 0
+              ? sign * Float.POSITIVE_INFINITY
+              : Float.intBitsToFloat(signBit << 16 | 0x7F800000 | significandBits << 13);
+        }
+        return Float.intBitsToFloat(signBit << 16 | (exponent + 127) << 23 | significandBits << 13);
+    }
+
+    private static int toByte(float component)
+    {
+        if (!(component > 0)) {
+            return 0;  // includes NaN
+        }
+        if (component >= 1) {
+            return 255;
+        }
+        return (int) (component * 255 + 0.5f);
+    }
+
+    private PackedColor()
+    {
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import org.jetbrains.annotations.*;
+
+/**
+  Operations on positions packed into a {@code long}, for use by code that cannot afford to allocate a
+  {@link Position} for each point. The X coordinate is stored in the high 32 bits and the Y coordinate in the low
+  32 bits. Arithmetic is not checked for overflow, consistent with {@code int} arithmetic.
+*/
+
+public final class PackedPosition
+{
+    public static final long ORIGIN = 0;
+
+    /**
+      Pack a position.
+      @param x The X coordinate.
+      @param y The Y coordinate.
+      @return the packed position.
+    */
+
+    public static long pack(int x, int y)
+    {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    public static int x(long p)
+    {
+        return (int) (p >> 32);
+    }
+
+    public static int y(long p)
+    {
+        return (int) p;
+    }
+
+    public static long fromPosition(@NotNull Position p)
+    {
+        return pack(p.x, p.y);
+    }
+
+    public static @NotNull Position toPosition(long p)
+    {
+        return Position.create(x(p), y(p));
+    }
+
+    public static long add(long p1, long p2)
+    {
+        return pack(x(p1) + x(p2), y(p1) + y(p2));
+    }
+
+    public static long subtract(long p1, long p2)
+    {
+        return pack(x(p1) - x(p2), y(p1) - y(p2));
+    }
+
+    public static long offset(long p, int xOffset, int yOffset)
+    {
+        return pack(x(p) + xOffset, y(p) + yOffset);
+    }
+
+    /**
+      Scale a position relative to the origin. The scaled coordinates are rounded to the nearest integer.
+      @param p The packed position.
+      @param factor The scale factor.
+      @return the scaled position.
+    */
+
+    public static long scale(long p, double factor)
+    {
+        return pack((int) Math.round(x(p) * factor), (int) Math.round(y(p) * factor));
+    }
+
+    /**
+      Determine whether a position is contained in the specified bounds, using the same definition as
+      {@link Bounds#contains}.
+    */
+
+    public static boolean contains(@NotNull Bounds b, long p)
+    {
+        return b.contains(x(p), y(p));
+    }
+
+    public static @NotNull String toString(long p)
+    {
+        return "(" + x(p) + ", " + y(p) + ")";
+    }
+
+    private PackedPosition()
+    {
+    }
+}
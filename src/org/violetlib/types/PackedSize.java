@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import org.jetbrains.annotations.*;
+
+/**
+  Operations on sizes packed into a {@code long}, for use by code that cannot afford to allocate a {@link Size} for
+  each value. The width is stored in the high 32 bits and the height in the low 32 bits. As with {@link Size}, the
+  width and height must not be negative.
+*/
+
+public final class PackedSize
+{
+    public static final long ZERO = 0;
+
+    /**
+      Pack a size.
+      @param width The width.
+      @param height The height.
+      @return the packed size.
+      @throws IllegalArgumentException if {@code width} or {@code height} is negative.
+    */
+
+    public static long pack(int width, int height)
+      throws IllegalArgumentException
+    {
+        if (width < 0) {
+            throw new IllegalArgumentException("Invalid width: " + width);
+        }
+
+        if (height < 0) {
+            throw new IllegalArgumentException("Invalid height: " + height);
+        }
+
+        return ((long) width << 32) | height;
+    }
+
+    public static int width(long s)
+    {
+        return (int) (s >> 32);
+    }
+
+    public static int height(long s)
+    {
+        return (int) s;
+    }
+
+    public static long fromSize(@NotNull Size s)
+    {
+        return ((long) s.width << 32) | s.height;
+    }
+
+    public static @NotNull Size toSize(long s)
+    {
+        return Size.create(width(s), height(s));
+    }
+
+    /**
+      Add two sizes.
+      @throws IllegalArgumentException if the result overflows.
+    */
+
+    public static long add(long s1, long s2)
+      throws IllegalArgumentException
+    {
+        return pack(width(s1) + width(s2), height(s1) + height(s2));
+    }
+
+    /**
+      Subtract one size from another.
+      @throws IllegalArgumentException if the result would have a negative width or height.
+    */
+
+    public static long subtract(long s1, long s2)
+      throws IllegalArgumentException
+    {
+        return pack(width(s1) - width(s2), height(s1) - height(s2));
+    }
+
+    /**
+      Scale a size. The scaled dimensions are rounded to the nearest integer.
+      @param s The packed size.
+      @param factor The scale factor.
+      @return the scaled size.
+      @throws IllegalArgumentException if {@code factor} is negative.
+    */
+
+    public static long scale(long s, double factor)
+      throws IllegalArgumentException
+    {
+        if (factor < 0) {
+            throw new IllegalArgumentException("Invalid scale factor: " + factor);
+        }
+        return pack((int) Math.round(width(s) * factor), (int) Math.round(height(s) * factor));
+    }
+
+    /**
+      Determine whether a position is contained in a rectangle of the specified size located at the origin, using
+      the same definition as {@link Bounds#contains}.
+      @param s The packed size.
+      @param p The packed position.
+    */
+
+    public static boolean contains(long s, long p)
+    {
+        int x = PackedPosition.x(p);
+        int y = PackedPosition.y(p);
+        return x >= 0 && x <= width(s) && y >= 0 && y <= height(s);
+    }
+
+    public static @NotNull String toString(long s)
+    {
+        return width(s) + "x" + height(s);
+    }
+
+    private PackedSize()
+    {
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An indexed set of colors that supports finding the entry nearest to an arbitrary color.
+  <p>
+  Distances are measured in CIE Lab space (the CIE76 color difference), extended with alpha as a fourth coordinate
+  scaled to the range of L*, so that colors that look alike are considered near. Entries are indexed by a k-d tree,
+  so a lookup takes logarithmic time in typical cases.
+*/
+
+public final @Immutable class Palette
+{
+    /**
+      Create a palette.
+      @param colors The palette entries.
+      @throws IllegalArgumentException if {@code colors} is empty.
+    */
+
+    public static @NotNull Palette create(@NotNull List<ColorDescription> colors)
+      throws IllegalArgumentException
+    {
+        if (colors.isEmpty()) {
+            throw new IllegalArgumentException("Palette must not be empty");
+        }
+        return new Palette(colors.toArray(new ColorDescription[0]));
+    }
+
+    private static final int DIMENSIONS = 4;
+    private static final float ALPHA_SCALE = 100;
+
+    private final @NotNull ColorDescription[] colors;
+    private final @NotNull float[] coordinates;  // DIMENSIONS per entry
+    private final @NotNull int[] tree;           // entry indexes; the node for a range is at the range midpoint
+    private final @NotNull byte[] axes;          // the split axis of each node, by position in tree
+
+    private Palette(@NotNull ColorDescription[] colors)
+    {
+        this.colors = colors;
+        int count = colors.length;
+        coordinates = new float[count * DIMENSIONS];
+        for (int i = 0; i < count; i++) {
+            ColorDescription c = colors[i];
+            toCoordinates(c.getRed(), c.getGreen(), c.getBlue(), c.getAlpha(), coordinates, i * DIMENSIONS);
+        }
+        tree = new int[count];
+        for (int i = 0; i < count; i++) {
+            tree[i] = i;
+        }
+        axes = new byte[count];
+        build(0, count);
+    }
+
+    public int size()
+    {
+        return colors.length;
+    }
+
+    public @NotNull ColorDescription get(int index)
+      throws IndexOutOfBoundsException
+    {
+        return colors[index];
+    }
+
+    public @NotNull List<ColorDescription> getColors()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(colors)));
+    }
+
+    /**
+      Return the index of the entry nearest to the specified color.
+    */
+
+    public int findNearest(@NotNull ColorDescription c)
+    {
+        float[] q = new float[DIMENSIONS];
+        toCoordinates(c.getRed(), c.getGreen(), c.getBlue(), c.getAlpha(), q, 0);
+        return findNearest(q, new Search());
+    }
+
+    /**
+      Return the index of the entry nearest to the specified color.
+      @param argb The color, packed as defined by {@link PackedColor}.
+    */
+
+    public int findNearest(int argb)
+    {
+        float[] q = new float[DIMENSIONS];
+        ColorConversion.argbToLab(new int[] { argb }, 0, q, 0, 1);
+        q[3] *= ALPHA_SCALE;
+        return findNearest(q, new Search());
+    }
+
+    /**
+      Map a span of pixels to the indexes of their nearest palette entries. Recently seen pixel values are remembered,
+      so images with repeated colors are mapped quickly.
+      @param source The pixels, packed as defined by {@link PackedColor}.
+      @param sourceOffset The index of the first pixel.
+      @param target The array to receive the palette indexes.
+      @param targetOffset The index in {@code target} of the first palette index.
+      @param count The number of pixels.
+    */
+
+    public void map(@NotNull int[] source, int sourceOffset, @NotNull int[] target, int targetOffset, int count)
+    {
+        int cacheSize = 4096;
+        int[] cachedPixels = new int[cacheSize];
+        int[] cachedIndexes = new int[cacheSize];
+        Arrays.fill(cachedIndexes, -1);
+        int[] pixel = new int[1];
+        float[] q = new float[DIMENSIONS];
+        Search search = new Search();
+        for (int i = 0; i < count; i++) {
+            int argb = source[sourceOffset + i];
+            int slot = (argb * 0x9E3779B9) >>> 20;
+            int index = cachedIndexes[slot];
+            if (index < 0 || cachedPixels[slot] != argb) {
+                pixel[0] = argb;
+                ColorConversion.argbToLab(pixel, 0, q, 0, 1);
+                q[3] *= ALPHA_SCALE;
+                index = findNearest(q, search);
+                cachedPixels[slot] = argb;
+                cachedIndexes[slot] = index;
+            }
+            target[targetOffset + i] = index;
+        }
+    }
+
+    /**
+      Map a span of pixels to their nearest palette colors.
+      @param pixels The pixels, packed as defined by {@link PackedColor}, which are replaced by the palette colors.
+      @param offset The index of the first pixel.
+      @param count The number of pixels.
+    */
+
+    public void remap(@NotNull int[] pixels, int offset, int count)
+    {
+        int[] indexes = new int[count];
+        map(pixels, offset, indexes, 0, count);
+        int[] argb = new int[colors.length];
+        PackedColor.fromColors(colors, 0, argb, 0, colors.length);
+        for (int i = 0; i < count; i++) {
+            pixels[offset + i] = argb[indexes[i]];
+        }
+    }
+
+    /**
+      Return the index of the entry nearest to a point in the palette coordinate space.
+    */
+
+    int findNearest(@NotNull float[] q, @NotNull Search search)
+    {
+        search.best = -1;
+        search.bestDistance = Float.POSITIVE_INFINITY;
+        search(q, 0, tree.length, search);
+        return search.best;
+    }
+
+    static void toCoordinates(float red, float green, float blue, float alpha, @NotNull float[] target, int offset)
+    {
+        target[offset] = red;
+        target[offset + 1] = green;
+        target[offset + 2] = blue;
+        target[offset + 3] = alpha;
+        ColorConversion.rgbaToLab(target, offset, target, offset, 1);
+        target[offset + 3] *= ALPHA_SCALE;
+    }
+
+    static @NotNull ColorDescription fromCoordinates(@NotNull float[] source, int offset)
+    {
+        float[] rgba = new float[DIMENSIONS];
+        System.arraycopy(source, offset, rgba, 0, DIMENSIONS);
+        rgba[3] /= ALPHA_SCALE;
+        ColorConversion.labToRgba(rgba, 0, rgba, 0, 1);
+        return ColorDescription.color(clamp(rgba[0]), clamp(rgba[1]), clamp(rgba[2]), clamp(rgba[3]));
+    }
+
+    private static float clamp(float f)
+    {
+        return f < 0 ? 0 : f > 1 ? 1 : f;
+    }
+
+    private void search(@NotNull float[] q, int from, int to, @NotNull Search search)
+    {
+        if (from >= to) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        int entry = tree[middle];
+        int base = entry * DIMENSIONS;
+        float distance = 0;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            float delta = q[d] - coordinates[base + d];
+            distance += delta * delta;
+        }
+        if (distance < search.bestDistance) {
+            search.best = entry;
+            search.bestDistance = distance;
+        }
+
+        int axis = axes[middle];
+        float delta = q[axis] - coordinates[base + axis];
+        if (delta < 0) {
+            search(q, from, middle, search);
+            if (delta * delta < search.bestDistance) {
+                search(q, middle + 1, to, search);
+            }
+        } else {
+            search(q, middle + 1, to, search);
+            if (delta * delta < search.bestDistance) {
+                search(q, from, middle, search);
+            }
+        }
+    }
+
+    /**
+      Arrange the tree entries in the specified range so that the entry at the midpoint is the median along the axis
+      of greatest spread, then arrange the two halves recursively.
+    */
+
+    private void build(int from, int to)
+    {
+        if (to - from <= 1) {
+            return;
+        }
+        int axis = 0;
+        float bestSpread = -1;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                float v = coordinates[tree[i] * DIMENSIONS + d];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            if (max - min > bestSpread) {
+                bestSpread = max - min;
+                axis = d;
+            }
+        }
+
+        int middle = (from + to) >>> 1;
+        select(from, to - 1, middle, axis);
+        axes[middle] = (byte) axis;
+        build(from, middle);
+        build(middle + 1, to);
+    }
+
+    /**
+      Partially sort the tree entries in the specified range (inclusive) so that the entry at index k is in its
+      sorted position along the specified axis.
+    */
+
+    private void select(int left, int right, int k, int axis)
+    {
+        while (right > left) {
+            float pivot = coordinates[tree[(left + right) >>> 1] * DIMENSIONS + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coordinates[tree[i] * DIMENSIONS + axis] < pivot) {
+                    i++;
+                }
+                while (coordinates[tree[j] * DIMENSIONS + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int t = tree[i];
+                    tree[i] = tree[j];
+                    tree[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    static final class Search
+    {
+        int best;
+        float bestDistance;
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        return "Palette" + Arrays.toString(colors);
+    }
+}
@@ -8,8 +8,6 @@
 
 package org.violetlib.types;
 
-import java.util.Objects;
-
 import org.jetbrains.annotations.*;
 import org.violetlib.annotations.Immutable;
 import org.violetlib.annotations.Value;
@@ -20,11 +18,42 @@ import org.violetlib.annotations.Value;
 
 public final @Immutable @Value class Position
 {
+    /**
+      Create a description of a point.
+      @param x The X coordinate.
+      @param y The Y coordinate.
+      @return the position. Positions near the origin are canonical instances.
+    */
+
     public static @NotNull Position create(int x, int y)
     {
+        int cx = x - CACHE_MIN;
+        int cy = y - CACHE_MIN;
+        if (cx >= 0 && cx < CACHE_EXTENT && cy >= 0 && cy < CACHE_EXTENT) {
+            int index = cx * CACHE_EXTENT + cy;
+            Position p = CACHE.get(index);
+            return p != null ? p : CACHE.install(index, new Position(x, y));
+        }
         return new Position(x, y);
     }
 
+    /**
+      Return statistics on the use of canonical instances by {@link #create}. Only positions in the canonicalized
+      range are counted. Statistics are recorded only if the system property
+      {@code org.violetlib.types.recordCacheStatistics} is {@code true}; otherwise the counts are zero.
+    */
+
+    public static @NotNull CacheStatistics getCacheStatistics()
+    {
+        return CACHE.getStatistics();
+    }
+
+    // Positions whose coordinates are both in the range CACHE_MIN (inclusive) to CACHE_MIN + CACHE_EXTENT (exclusive)
+    // are canonicalized
+    private static final int CACHE_MIN = -16;
+    private static final int CACHE_EXTENT = 64;
+    private static final @NotNull ValueTable<Position> CACHE = new ValueTable<>(CACHE_EXTENT * CACHE_EXTENT);
+
     public final int x;
     public final int y;
 
@@ -46,7 +75,7 @@ public final @Immutable @Value class Position
     @Override
     public int hashCode()
     {
-        return Objects.hash(x, y);
+        return 31 * x + y;
     }
 
     @Override
@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A growable list of points stored as primitive values. Each element is stored as two consecutive integers (x, y),
+  so that large collections do not require a {@link Position} object per element.
+  This class is not thread safe.
+*/
+
+public final class PositionArray
+{
+    /**
+      An operation that accepts the coordinates of an element.
+    */
+
+    public interface Visitor
+    {
+        void visit(int index, int x, int y);
+    }
+
+    public static @NotNull PositionArray create()
+    {
+        return new PositionArray(10);
+    }
+
+    /**
+      Create an empty list.
+      @param initialCapacity The number of elements that can be added without growing the storage.
+      @throws IllegalArgumentException if {@code initialCapacity} is negative.
+    */
+
+    public static @NotNull PositionArray create(int initialCapacity)
+      throws IllegalArgumentException
+    {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + initialCapacity);
+        }
+        return new PositionArray(initialCapacity);
+    }
+
+    private static final int STRIDE = 2;
+
+    private @NotNull int[] data;
+    private int count;
+
+    private PositionArray(int initialCapacity)
+    {
+        this.data = new int[initialCapacity * STRIDE];
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    public boolean isEmpty()
+    {
+        return count == 0;
+    }
+
+    public void clear()
+    {
+        count = 0;
+    }
+
+    /**
+      Ensure that the specified number of elements can be stored without growing the storage.
+    */
+
+    public void ensureCapacity(int capacity)
+    {
+        if (capacity * STRIDE > data.length) {
+            data = Arrays.copyOf(data, IndexSort.grow(data.length / STRIDE, capacity) * STRIDE);
+        }
+    }
+
+    public void add(int x, int y)
+    {
+        ensureCapacity(count + 1);
+        int base = count * STRIDE;
+        data[base] = x;
+        data[base + 1] = y;
+        count++;
+    }
+
+    public void add(@NotNull Position p)
+    {
+        add(p.x, p.y);
+    }
+
+    /**
+      Add an element.
+      @param p The position, packed as defined by {@link PackedPosition}.
+    */
+
+    public void addPacked(long p)
+    {
+        add(PackedPosition.x(p), PackedPosition.y(p));
+    }
+
+    public void addAll(@NotNull Iterable<Position> ps)
+    {
+        for (Position p : ps) {
+            add(p);
+        }
+    }
+
+    public void addAll(@NotNull PositionArray a)
+    {
+        ensureCapacity(count + a.count);
+        System.arraycopy(a.data, 0, data, count * STRIDE, a.count * STRIDE);
+        count += a.count;
+    }
+
+    public void set(int index, int x, int y)
+      throws IndexOutOfBoundsException
+    {
+        int base = base(index);
+        data[base] = x;
+        data[base + 1] = y;
+    }
+
+    public void set(int index, @NotNull Position p)
+      throws IndexOutOfBoundsException
+    {
+        set(index, p.x, p.y);
+    }
+
+    /**
+      Remove an element. Subsequent elements are shifted down.
+      @throws IndexOutOfBoundsException if {@code index} is not valid.
+    */
+
+    public void remove(int index)
+      throws IndexOutOfBoundsException
+    {
+        int base = base(index);
+        System.arraycopy(data, base + STRIDE, data, base, (count - index - 1) * STRIDE);
+        count--;
+    }
+
+    public @NotNull Position get(int index)
+      throws IndexOutOfBoundsException
+    {
+        int base = base(index);
+        return Position.create(data[base], data[base + 1]);
+    }
+
+    /**
+      Return an element packed as defined by {@link PackedPosition}.
+    */
+
+    public long getPacked(int index)
+      throws IndexOutOfBoundsException
+    {
+        int base = base(index);
+        return PackedPosition.pack(data[base], data[base + 1]);
+    }
+
+    public int getX(int index)
+      throws IndexOutOfBoundsException
+    {
+        return data[base(index)];
+    }
+
+    public int getY(int index)
+      throws IndexOutOfBoundsException
+    {
+        return data[base(index) + 1];
+    }
+
+    /**
+      Move an element.
+    */
+
+    public void offset(int index, int xOffset, int yOffset)
+      throws IndexOutOfBoundsException
+    {
+        int base = base(index);
+        data[base] += xOffset;
+        data[base + 1] += yOffset;
+    }
+
+    /**
+      Move all elements.
+    */
+
+    public void offsetAll(int xOffset, int yOffset)
+    {
+        int limit = count * STRIDE;
+        for (int base = 0; base < limit; base += STRIDE) {
+            data[base] += xOffset;
+            data[base + 1] += yOffset;
+        }
+    }
+
+    /**
+      Visit the elements in order.
+    */
+
+    public void forEach(@NotNull Visitor v)
+    {
+        for (int i = 0; i < count; i++) {
+            int base = i * STRIDE;
+            v.visit(i, data[base], data[base + 1]);
+        }
+    }
+
+    /**
+      Sort the elements. The sort is stable.
+      @param c The comparator, which is called with the indexes of elements in their order prior to sorting. The
+      comparator may use the accessors of this list to obtain the coordinates of the elements.
+    */
+
+    public void sort(@NotNull IndexComparator c)
+    {
+        data = IndexSort.sort(data, count, STRIDE, c);
+    }
+
+    /**
+      Sort the elements in reading order: by Y coordinate, then by X coordinate.
+    */
+
+    public void sortByPosition()
+    {
+        int[] d = data;
+        sort((i, j) -> {
+            int result = Integer.compare(d[i * STRIDE + 1], d[j * STRIDE + 1]);
+            return result != 0 ? result : Integer.compare(d[i * STRIDE], d[j * STRIDE]);
+        });
+    }
+
+    /**
+      Sort the elements in Z-order (Morton) curve order, so that elements that are near each other in space are near
+      each other in the list. The sort is stable and takes linear time.
+      @see SpaceFillingCurve
+    */
+
+    public void sortByMortonOrder()
+    {
+        long[] codes = new long[count];
+        for (int i = 0; i < count; i++) {
+            int base = i * STRIDE;
+            codes[i] = SpaceFillingCurve.mortonEncode(data[base], data[base + 1]);
+        }
+        reorder(SpaceFillingCurve.sortOrder(codes, count));
+    }
+
+    /**
+      Sort the elements in Hilbert curve order, so that elements that are near each other in space are near each
+      other in the list. The sort is stable and takes linear time.
+      @see SpaceFillingCurve
+    */
+
+    public void sortByHilbertOrder()
+    {
+        long[] codes = new long[count];
+        for (int i = 0; i < count; i++) {
+            int base = i * STRIDE;
+            codes[i] = SpaceFillingCurve.hilbertEncode(data[base], data[base + 1]);
+        }
+        reorder(SpaceFillingCurve.sortOrder(codes, count));
+    }
+
+    private void reorder(@NotNull int[] order)
+    {
+        int[] result = new int[data.length];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(data, order[i] * STRIDE, result, i * STRIDE, STRIDE);
+        }
+        data = result;
+    }
+
+    public @NotNull List<Position> toList()
+    {
+        List<Position> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(get(i));
+        }
+        return result;
+    }
+
+    /**
+      Release unused storage.
+    */
+
+    public void trimToSize()
+    {
+        if (data.length > count * STRIDE) {
+            data = Arrays.copyOf(data, count * STRIDE);
+        }
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            int base = i * STRIDE;
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append('(').append(data[base]).append(", ").append(data[base + 1]).append(')');
+        }
+        return sb.append(']').toString();
+    }
+
+    private int base(int index)
+      throws IndexOutOfBoundsException
+    {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        }
+        return index * STRIDE;
+    }
+}
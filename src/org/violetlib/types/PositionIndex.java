@@ -0,0 +1,651 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A spatial index (a quadtree) of values associated with positions. The index supports queries for the values whose
+  positions are in a rectangle, the values whose positions are within a distance of a point, and the values whose
+  positions are nearest to a point. As in {@link Bounds#contains}, the edges of a rectangle are considered part of the
+  rectangle.
+  <p>
+  The quadtree is compressed: a node whose square would contain only one occupied quadrant is omitted, so clustered
+  positions do not produce long chains of nodes.
+  <p>
+  This class is thread safe. Queries may be performed concurrently; modifications are performed exclusively.
+  Consumers passed to query methods are called while queries hold the index lock, and must not modify the index.
+*/
+
+public final class PositionIndex<T>
+{
+    /**
+      Create an empty index.
+    */
+
+    public static <T> @NotNull PositionIndex<T> create()
+    {
+        return new PositionIndex<>();
+    }
+
+    /**
+      Create an index containing the specified values. The index is built in bulk, by sorting the positions in
+      Z-order, which is faster than adding the values individually.
+
+      @param values The values.
+      @param positionFunction A function that returns the position associated with a value.
+    */
+
+    public static <T> @NotNull PositionIndex<T> create(@NotNull List<T> values,
+                                                       @NotNull Function<? super T, Position> positionFunction)
+    {
+        PositionIndex<T> index = new PositionIndex<>();
+        int count = values.size();
+        if (count > 0) {
+            int[] xs = new int[count];
+            int[] ys = new int[count];
+            long[] codes = new long[count];
+            for (int i = 0; i < count; i++) {
+                Position p = positionFunction.apply(values.get(i));
+                xs[i] = p.x;
+                ys[i] = p.y;
+                codes[i] = SpaceFillingCurve.mortonEncode(p.x, p.y);
+            }
+            int[] order = SpaceFillingCurve.sortOrder(codes.clone(), count);
+            long[] sortedCodes = new long[count];
+            for (int i = 0; i < count; i++) {
+                sortedCodes[i] = codes[order[i]];
+            }
+            index.root = build(values, xs, ys, order, sortedCodes, 0, count, 0, 0, ROOT_LEVEL);
+            index.size = count;
+        }
+        return index;
+    }
+
+    private static final int LEAF_CAPACITY = 16;
+    private static final int ROOT_LEVEL = 32;  // the level of a square that covers all positions
+
+    private final @NotNull ReadWriteLock lock = new ReentrantReadWriteLock();
+    private @Nullable Node root;
+    private int size;
+
+    private PositionIndex()
+    {
+    }
+
+    public int size()
+    {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    public void clear()
+    {
+        lock.writeLock().lock();
+        try {
+            root = null;
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+      Add a value to the index. A value may be added more than once.
+    */
+
+    public void add(@NotNull Position p, @NotNull T value)
+    {
+        add(p.x, p.y, value);
+    }
+
+    /**
+      Add a value to the index. A value may be added more than once.
+    */
+
+    public void add(int x, int y, @NotNull T value)
+    {
+        lock.writeLock().lock();
+        try {
+            root = insert(root, x, y, value);
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+      Remove a value from the index.
+      @param p The position associated with the value.
+      @param value The value.
+      @return true if the value was found and removed, false otherwise.
+    */
+
+    public boolean remove(@NotNull Position p, @NotNull T value)
+    {
+        lock.writeLock().lock();
+        try {
+            Node r = root;
+            if (r != null && remove(r, biased(p.x), biased(p.y), p.x, p.y, value)) {
+                root = r.count == 0 ? null : compress(r);
+                size--;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+      Find the values whose positions are in the specified rectangle.
+    */
+
+    public void findInBounds(@NotNull Bounds b, @NotNull Consumer<? super T> consumer)
+    {
+        long x1 = clampedBiased((long) b.x);
+        long x2 = clampedBiased((long) b.x + b.width);
+        long y1 = clampedBiased((long) b.y);
+        long y2 = clampedBiased((long) b.y + b.height);
+        lock.readLock().lock();
+        try {
+            if (root != null) {
+                findInBounds(root, x1, y1, x2, y2, consumer);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+      Return the values whose positions are in the specified rectangle.
+    */
+
+    public @NotNull List<T> getInBounds(@NotNull Bounds b)
+    {
+        List<T> result = new ArrayList<>();
+        findInBounds(b, result::add);
+        return result;
+    }
+
+    /**
+      Find the values whose positions are within a distance of a point.
+      @param px The X coordinate of the point.
+      @param py The Y coordinate of the point.
+      @param radius The maximum distance, inclusive.
+      @param consumer The consumer of the values.
+    */
+
+    public void findWithinDistance(int px, int py, double radius, @NotNull Consumer<? super T> consumer)
+    {
+        if (!(radius >= 0)) {
+            return;
+        }
+        double radiusSquared = radius * radius;
+        long ux = biased(px);
+        long uy = biased(py);
+        lock.readLock().lock();
+        try {
+            if (root != null) {
+                findWithinDistance(root, ux, uy, radiusSquared, consumer);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+      Return the values whose positions are within a distance of a point.
+      @param px The X coordinate of the point.
+      @param py The Y coordinate of the point.
+      @param radius The maximum distance, inclusive.
+    */
+
+    public @NotNull List<T> getWithinDistance(int px, int py, double radius)
+    {
+        List<T> result = new ArrayList<>();
+        findWithinDistance(px, py, radius, result::add);
+        return result;
+    }
+
+    /**
+      Return the value whose position is nearest to the specified point.
+      @return the nearest value, or null if the index is empty.
+    */
+
+    public @Nullable T getNearest(int px, int py)
+    {
+        List<T> result = getNearest(px, py, 1);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+      Return the values whose positions are nearest to the specified point, nearest first.
+      @param px The X coordinate of the point.
+      @param py The Y coordinate of the point.
+      @param count The maximum number of values to return.
+      @return the nearest values.
+    */
+
+    public @NotNull List<T> getNearest(int px, int py, int count)
+    {
+        long ux = biased(px);
+        long uy = biased(py);
+        lock.readLock().lock();
+        try {
+            List<T> result = new ArrayList<>(Math.max(0, Math.min(count, size)));
+            if (root == null || count <= 0) {
+                return result;
+            }
+
+            // Best first search: nodes and values are visited in order of increasing distance
+
+            PriorityQueue<Candidate> queue = new PriorityQueue<>();
+            queue.add(new Candidate(root, 0, false));
+            while (!queue.isEmpty()) {
+                Candidate c = queue.remove();
+                if (c.isValue) {
+                    @SuppressWarnings("unchecked")
+                    T value = (T) c.item;
+                    result.add(value);
+                    if (result.size() == count) {
+                        break;
+                    }
+                } else {
+                    Node n = (Node) c.item;
+                    if (n.children == null) {
+                        for (int i = 0; i < n.count; i++) {
+                            double d = distanceSquared(biased(n.xs[i]) - ux, biased(n.ys[i]) - uy);
+                            queue.add(new Candidate(n.values[i], d, true));
+                        }
+                    } else {
+                        for (Node child : n.children) {
+                            if (child != null) {
+                                queue.add(new Candidate(child, child.distanceSquared(ux, uy), false));
+                            }
+                        }
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static final class Candidate
+      implements Comparable<Candidate>
+    {
+        final @NotNull Object item;
+        final double distance;
+        final boolean isValue;
+
+        Candidate(@NotNull Object item, double distance, boolean isValue)
+        {
+            this.item = item;
+            this.distance = distance;
+            this.isValue = isValue;
+        }
+
+        @Override
+        public int compareTo(@NotNull Candidate o)
+        {
+            int result = Double.compare(distance, o.distance);
+            if (result == 0 && isValue != o.isValue) {
+                // Prefer values over nodes at the same distance, so that results are returned as early as possible
+                return isValue ? -1 : 1;
+            }
+            return result;
+        }
+    }
+
+    /**
+      A node of the tree. A node covers an aligned square of biased coordinates (see {@link #biased}) whose side is a
+      power of two. The children of an internal node are indexed by quadrant; a child covers a square within its
+      quadrant, which may be smaller than the quadrant. A leaf node stores the coordinates and values of its entries.
+    */
+
+    private static final class Node
+    {
+        final long originX;
+        final long originY;
+        final int level;  // the side of the square is 2^level
+        int count;  // the number of values in the subtree
+        @Nullable Node[] children;  // null for a leaf node
+        @NotNull int[] xs;
+        @NotNull int[] ys;
+        @NotNull Object[] values;
+
+        Node(long ux, long uy, int level, boolean isLeaf)
+        {
+            long mask = ~((1L << level) - 1);
+            this.originX = ux & mask;
+            this.originY = uy & mask;
+            this.level = level;
+            int capacity = isLeaf ? 4 : 0;
+            this.xs = new int[capacity];
+            this.ys = new int[capacity];
+            this.values = new Object[capacity];
+            this.children = isLeaf ? null : new Node[4];
+        }
+
+        boolean contains(long ux, long uy)
+        {
+            long side = 1L << level;
+            return ux >= originX && ux < originX + side && uy >= originY && uy < originY + side;
+        }
+
+        int quadrant(long ux, long uy)
+        {
+            int shift = level - 1;
+            return (int) (ux >>> shift & 1) | (int) (uy >>> shift & 1) << 1;
+        }
+
+        void addEntry(int x, int y, @NotNull Object value)
+        {
+            if (count == xs.length) {
+                int capacity = IndexSort.grow(xs.length, count + 1);
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            xs[count] = x;
+            ys[count] = y;
+            values[count] = value;
+            count++;
+        }
+
+        double distanceSquared(long ux, long uy)
+        {
+            long last = (1L << level) - 1;
+            long dx = ux < originX ? originX - ux : ux > originX + last ? ux - originX - last : 0;
+            long dy = uy < originY ? originY - uy : uy > originY + last ? uy - originY - last : 0;
+            return PositionIndex.distanceSquared(dx, dy);
+        }
+    }
+
+    private static @Nullable Node build(@NotNull List<?> values,
+                                        @NotNull int[] xs,
+                                        @NotNull int[] ys,
+                                        @NotNull int[] order,
+                                        @NotNull long[] codes,
+                                        int from,
+                                        int to,
+                                        long ux,
+                                        long uy,
+                                        int level)
+    {
+        if (from == to) {
+            return null;
+        }
+
+        // The level at which the positions diverge is determined by the highest bit in which their codes differ
+
+        int divergence = (64 - Long.numberOfLeadingZeros(codes[from] ^ codes[to - 1]) + 1) / 2;
+        if (to - from <= LEAF_CAPACITY || divergence == 0) {
+            Node leaf = new Node(ux, uy, level, true);
+            for (int i = from; i < to; i++) {
+                int index = order[i];
+                leaf.addEntry(xs[index], ys[index], values.get(index));
+            }
+            return leaf;
+        }
+
+        int first = order[from];
+        Node n = new Node(biased(xs[first]), biased(ys[first]), divergence, false);
+        assert n.children != null;
+        int shift = 2 * (divergence - 1);
+        int start = from;
+        for (int q = 0; q < 4; q++) {
+            int end = start;
+            while (end < to && (int) (codes[end] >>> shift & 3) == q) {
+                end++;
+            }
+            long qx = n.originX + ((long) (q & 1) << (divergence - 1));
+            long qy = n.originY + ((long) (q >> 1) << (divergence - 1));
+            n.children[q] = build(values, xs, ys, order, codes, start, end, qx, qy, divergence - 1);
+            start = end;
+        }
+        n.count = to - from;
+        return n;
+    }
+
+    private static @NotNull Node insert(@Nullable Node n, int x, int y, @NotNull Object value)
+    {
+        long ux = biased(x);
+        long uy = biased(y);
+        if (n == null) {
+            Node leaf = new Node(0, 0, ROOT_LEVEL, true);
+            leaf.addEntry(x, y, value);
+            return leaf;
+        }
+        if (!n.contains(ux, uy)) {
+            return join(n, ux, uy, x, y, value);
+        }
+        if (n.children == null) {
+            n.addEntry(x, y, value);
+            return n.count > LEAF_CAPACITY ? split(n) : n;
+        }
+        int q = n.quadrant(ux, uy);
+        Node child = n.children[q];
+        if (child == null) {
+            child = new Node(ux, uy, n.level - 1, true);
+            child.addEntry(x, y, value);
+            n.children[q] = child;
+        } else {
+            n.children[q] = insert(child, x, y, value);
+        }
+        n.count++;
+        return n;
+    }
+
+    /**
+      Create a node that contains an existing node and a new entry outside of it.
+    */
+
+    private static @NotNull Node join(@NotNull Node n, long ux, long uy, int x, int y, @NotNull Object value)
+    {
+        int level = 64 - Long.numberOfLeadingZeros((n.originX ^ ux) | (n.originY ^ uy));
+        Node parent = new Node(ux, uy, level, false);
+        assert parent.children != null;
+        Node leaf = new Node(ux, uy, level - 1, true);
+        leaf.addEntry(x, y, value);
+        parent.children[parent.quadrant(n.originX, n.originY)] = n;
+        parent.children[parent.quadrant(ux, uy)] = leaf;
+        parent.count = n.count + 1;
+        return parent;
+    }
+
+    /**
+      Split a full leaf node into an internal node covering the smallest square that contains its entries.
+    */
+
+    private static @NotNull Node split(@NotNull Node leaf)
+    {
+        long ux0 = biased(leaf.xs[0]);
+        long uy0 = biased(leaf.ys[0]);
+        long differences = 0;
+        for (int i = 1; i < leaf.count; i++) {
+            differences |= (biased(leaf.xs[i]) ^ ux0) | (biased(leaf.ys[i]) ^ uy0);
+        }
+        if (differences == 0) {
+            return leaf;  // all entries have the same position
+        }
+
+        int level = 64 - Long.numberOfLeadingZeros(differences);
+        Node n = new Node(ux0, uy0, level, false);
+        assert n.children != null;
+        for (int i = 0; i < leaf.count; i++) {
+            long ux = biased(leaf.xs[i]);
+            long uy = biased(leaf.ys[i]);
+            int q = n.quadrant(ux, uy);
+            Node child = n.children[q];
+            if (child == null) {
+                child = new Node(ux, uy, level - 1, true);
+                n.children[q] = child;
+            }
+            child.addEntry(leaf.xs[i], leaf.ys[i], leaf.values[i]);
+        }
+        n.count = leaf.count;
+        return n;
+    }
+
+    private static boolean remove(@NotNull Node n, long ux, long uy, int x, int y, @NotNull Object value)
+    {
+        if (!n.contains(ux, uy)) {
+            return false;
+        }
+        if (n.children == null) {
+            for (int i = 0; i < n.count; i++) {
+                if (n.xs[i] == x && n.ys[i] == y && n.values[i].equals(value)) {
+                    int last = n.count - 1;
+                    n.xs[i] = n.xs[last];
+                    n.ys[i] = n.ys[last];
+                    n.values[i] = n.values[last];
+                    n.values[last] = null;
+                    n.count = last;
+                    return true;
+                }
+            }
+            return false;
+        }
+        int q = n.quadrant(ux, uy);
+        Node child = n.children[q];
+        if (child != null && remove(child, ux, uy, x, y, value)) {
+            n.children[q] = child.count == 0 ? null : compress(child);
+            n.count--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+      Replace an internal node that has only one child with that child.
+    */
+
+    private static @NotNull Node compress(@NotNull Node n)
+    {
+        if (n.children != null) {
+            Node only = null;
+            for (Node child : n.children) {
+                if (child != null) {
+                    if (only != null) {
+                        return n;
+                    }
+                    only = child;
+                }
+            }
+            if (only != null) {
+                return only;
+            }
+        }
+        return n;
+    }
+
+    private void findInBounds(@NotNull Node n, long x1, long y1, long x2, long y2, @NotNull Consumer<? super T> c)
+    {
+        long last = (1L << n.level) - 1;
+        if (n.originX > x2 || n.originX + last < x1 || n.originY > y2 || n.originY + last < y1) {
+            return;
+        }
+        if (n.children == null) {
+            for (int i = 0; i < n.count; i++) {
+                long ux = biased(n.xs[i]);
+                long uy = biased(n.ys[i]);
+                if (ux >= x1 && ux <= x2 && uy >= y1 && uy <= y2) {
+                    accept(c, n.values[i]);
+                }
+            }
+        } else {
+            for (Node child : n.children) {
+                if (child != null) {
+                    findInBounds(child, x1, y1, x2, y2, c);
+                }
+            }
+        }
+    }
+
+    private void findWithinDistance(@NotNull Node n,
+                                    long ux,
+                                    long uy,
+                                    double radiusSquared,
+                                    @NotNull Consumer<? super T> c)
+    {
+        if (n.distanceSquared(ux, uy) > radiusSquared) {
+            return;
+        }
+        if (n.children == null) {
+            for (int i = 0; i < n.count; i++) {
+                if (distanceSquared(biased(n.xs[i]) - ux, biased(n.ys[i]) - uy) <= radiusSquared) {
+                    accept(c, n.values[i]);
+                }
+            }
+        } else {
+            for (Node child : n.children) {
+                if (child != null) {
+                    findWithinDistance(child, ux, uy, radiusSquared, c);
+                }
+            }
+        }
+    }
+
+    private void accept(@NotNull Consumer<? super T> c, @NotNull Object value)
+    {
+        @SuppressWarnings("unchecked")
+        T v = (T) value;
+        c.accept(v);
+    }
+
+    /**
+      Map a coordinate to a nonnegative value that preserves order, so that squares can be aligned to powers of two.
+    */
+
+    private static long biased(int coordinate)
+    {
+        return (coordinate ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+    }
+
+    private static long clampedBiased(long coordinate)
+    {
+        return Math.max(0, Math.min(0xFFFFFFFFL, coordinate - Integer.MIN_VALUE));
+    }
+
+    private static double distanceSquared(long dx, long dy)
+    {
+        double x = dx;
+        double y = dy;
+        return x * x + y * y;
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        return "PositionIndex{" +
+                 "size=" + size() +
+                 '}';
+    }
+}
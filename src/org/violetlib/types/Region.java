@@ -0,0 +1,556 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+import org.violetlib.annotations.Value;
+
+/**
+  A platform-independent description of an arbitrary area composed of rectangles.
+  <p>
+  A region is a set of pixels. Unlike {@link Bounds#contains}, which includes the edges, a rectangle {@code b}
+  contributes the pixels whose X coordinate is at least {@code b.x} and less than {@code b.x + b.width}, and whose
+  Y coordinate is at least {@code b.y} and less than {@code b.y + b.height}. A rectangle with no width or height
+  contributes no pixels.
+  <p>
+  A region is represented as a sequence of horizontal bands, ordered by Y coordinate, each of which contains an ordered
+  sequence of disjoint horizontal spans. The representation is canonical: adjacent bands with the same spans are
+  merged, and touching spans are merged, so two regions are equal if and only if they contain the same pixels.
+  Point queries take logarithmic time.
+*/
+
+public final @Immutable @Value class Region
+{
+    public static final @NotNull Region EMPTY = new Region(new int[0], new int[0], new int[1], new int[0]);
+
+    /**
+      Create a region containing the pixels of a rectangle.
+    */
+
+    public static @NotNull Region create(@NotNull Bounds b)
+    {
+        return create(b.x, b.y, b.width, b.height);
+    }
+
+    /**
+      Create a region containing the pixels of a rectangle.
+      @throws IllegalArgumentException if {@code width} or {@code height} is negative.
+    */
+
+    public static @NotNull Region create(int x, int y, int width, int height)
+      throws IllegalArgumentException
+    {
+        if (width < 0) {
+            throw new IllegalArgumentException("Invalid width: " + width);
+        }
+
+        if (height < 0) {
+            throw new IllegalArgumentException("Invalid height: " + height);
+        }
+
+        if (width == 0 || height == 0) {
+            return EMPTY;
+        }
+
+        return new Region(new int[] { y }, new int[] { y + height }, new int[] { 0, 2 }, new int[] { x, x + width });
+    }
+
+    /**
+      Create a region containing the pixels of a collection of rectangles.
+    */
+
+    public static @NotNull Region create(@NotNull Iterable<Bounds> bs)
+    {
+        List<Region> regions = new ArrayList<>();
+        for (Bounds b : bs) {
+            regions.add(create(b));
+        }
+        return unionAll(regions, 0, regions.size());
+    }
+
+    /**
+      Create a region containing the pixels of a collection of rectangles.
+    */
+
+    public static @NotNull Region create(@NotNull BoundsArray bs)
+    {
+        List<Region> regions = new ArrayList<>(bs.size());
+        bs.forEach((index, x, y, width, height) -> regions.add(create(x, y, width, height)));
+        return unionAll(regions, 0, regions.size());
+    }
+
+    private static @NotNull Region unionAll(@NotNull List<Region> regions, int from, int to)
+    {
+        int count = to - from;
+        if (count == 0) {
+            return EMPTY;
+        }
+        if (count == 1) {
+            return regions.get(from);
+        }
+        int middle = (from + to) >>> 1;
+        return unionAll(regions, from, middle).union(unionAll(regions, middle, to));
+    }
+
+    private static final int UNION = 0;
+    private static final int INTERSECTION = 1;
+    private static final int DIFFERENCE = 2;
+
+    // Band i covers Y coordinates from tops[i] (inclusive) to bottoms[i] (exclusive). Its spans are stored in spans
+    // from spanStarts[i] to spanStarts[i+1] as pairs of X coordinates, start (inclusive) and end (exclusive).
+
+    private final @NotNull int[] tops;
+    private final @NotNull int[] bottoms;
+    private final @NotNull int[] spanStarts;
+    private final @NotNull int[] spans;
+
+    private Region(@NotNull int[] tops, @NotNull int[] bottoms, @NotNull int[] spanStarts, @NotNull int[] spans)
+    {
+        this.tops = tops;
+        this.bottoms = bottoms;
+        this.spanStarts = spanStarts;
+        this.spans = spans;
+    }
+
+    public boolean isEmpty()
+    {
+        return tops.length == 0;
+    }
+
+    /**
+      Return the smallest rectangle that contains all pixels of this region.
+      @return the bounding rectangle, or null if this region is empty.
+    */
+
+    public @Nullable Bounds getBounds()
+    {
+        if (isEmpty()) {
+            return null;
+        }
+        int x1 = Integer.MAX_VALUE;
+        int x2 = Integer.MIN_VALUE;
+        for (int i = 0; i < tops.length; i++) {
+            x1 = Math.min(x1, spans[spanStarts[i]]);
+            x2 = Math.max(x2, spans[spanStarts[i + 1] - 1]);
+        }
+        int y1 = tops[0];
+        int y2 = bottoms[bottoms.length - 1];
+        return Bounds.create(x1, y1, x2 - x1, y2 - y1);
+    }
+
+    /**
+      Determine whether this region contains a pixel.
+    */
+
+    public boolean contains(int px, int py)
+    {
+        int band = findBand(py);
+        if (band < 0) {
+            return false;
+        }
+        int span = findSpan(band, px);
+        return span >= 0 && px < spans[span + 1];
+    }
+
+    /**
+      Determine whether this region contains all of the pixels of a rectangle. An empty rectangle is contained in any
+      region. The first band is found by binary search, and each band that covers the rectangle is checked by a
+      binary search of its spans. No storage is allocated.
+    */
+
+    public boolean contains(@NotNull Bounds b)
+    {
+        if (b.width == 0 || b.height == 0) {
+            return true;
+        }
+        int x2 = b.x + b.width;
+        int y2 = b.y + b.height;
+        int band = findBand(b.y);
+        if (band < 0) {
+            return false;
+        }
+
+        // The bands must be contiguous from the top of the rectangle to its bottom, and each must have a single span
+        // that covers the rectangle horizontally
+
+        for (;;) {
+            int span = findSpan(band, b.x);
+            if (span < 0 || spans[span + 1] < x2) {
+                return false;
+            }
+            if (bottoms[band] >= y2) {
+                return true;
+            }
+            if (band + 1 == tops.length || tops[band + 1] != bottoms[band]) {
+                return false;
+            }
+            band++;
+        }
+    }
+
+    /**
+      Determine whether this region contains any of the pixels of a rectangle.
+    */
+
+    public boolean intersects(@NotNull Bounds b)
+    {
+        if (b.width == 0 || b.height == 0 || isEmpty()) {
+            return false;
+        }
+        int x2 = b.x + b.width;
+        int y2 = b.y + b.height;
+        for (int band = firstBandBelow(b.y); band < tops.length && tops[band] < y2; band++) {
+            for (int s = spanStarts[band]; s < spanStarts[band + 1]; s += 2) {
+                if (spans[s] < x2 && b.x < spans[s + 1]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public @NotNull Region union(@NotNull Region r)
+    {
+        if (r.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return r;
+        }
+        return combine(this, r, UNION);
+    }
+
+    public @NotNull Region union(@NotNull Bounds b)
+    {
+        return union(create(b));
+    }
+
+    public @NotNull Region intersect(@NotNull Region r)
+    {
+        if (isEmpty() || r.isEmpty()) {
+            return EMPTY;
+        }
+        return combine(this, r, INTERSECTION);
+    }
+
+    public @NotNull Region intersect(@NotNull Bounds b)
+    {
+        return intersect(create(b));
+    }
+
+    public @NotNull Region subtract(@NotNull Region r)
+    {
+        if (isEmpty() || r.isEmpty()) {
+            return this;
+        }
+        return combine(this, r, DIFFERENCE);
+    }
+
+    public @NotNull Region subtract(@NotNull Bounds b)
+    {
+        return subtract(create(b));
+    }
+
+    public @NotNull Region offset(int xOffset, int yOffset)
+    {
+        if (isEmpty() || (xOffset == 0 && yOffset == 0)) {
+            return this;
+        }
+        int[] newTops = tops.clone();
+        int[] newBottoms = bottoms.clone();
+        for (int i = 0; i < newTops.length; i++) {
+            newTops[i] += yOffset;
+            newBottoms[i] += yOffset;
+        }
+        int[] newSpans = spans.clone();
+        for (int i = 0; i < newSpans.length; i++) {
+            newSpans[i] += xOffset;
+        }
+        return new Region(newTops, newBottoms, spanStarts, newSpans);
+    }
+
+    /**
+      Return the number of rectangles returned by {@link #getRectangles}.
+    */
+
+    public int getRectangleCount()
+    {
+        return spans.length / 2;
+    }
+
+    /**
+      Return a set of disjoint rectangles that together contain the pixels of this region. The rectangles are ordered
+      by Y coordinate, then by X coordinate.
+    */
+
+    public @NotNull List<Bounds> getRectangles()
+    {
+        List<Bounds> result = new ArrayList<>(spans.length / 2);
+        for (int band = 0; band < tops.length; band++) {
+            int height = bottoms[band] - tops[band];
+            for (int s = spanStarts[band]; s < spanStarts[band + 1]; s += 2) {
+                result.add(Bounds.create(spans[s], tops[band], spans[s + 1] - spans[s], height));
+            }
+        }
+        return result;
+    }
+
+    /**
+      Visit a set of disjoint rectangles that together contain the pixels of this region. The rectangles are ordered
+      by Y coordinate, then by X coordinate.
+    */
+
+    public void forEachRectangle(@NotNull BoundsArray.Visitor v)
+    {
+        int index = 0;
+        for (int band = 0; band < tops.length; band++) {
+            int height = bottoms[band] - tops[band];
+            for (int s = spanStarts[band]; s < spanStarts[band + 1]; s += 2) {
+                v.visit(index++, spans[s], tops[band], spans[s + 1] - spans[s], height);
+            }
+        }
+    }
+
+    /**
+      Return the index of the band containing the specified Y coordinate, or -1 if there is none.
+    */
+
+    private int findBand(int py)
+    {
+        int band = firstBandBelow(py);
+        return band < tops.length && tops[band] <= py ? band : -1;
+    }
+
+    /**
+      Return the index in {@code spans} of the last span in a band whose start is not greater than the specified X
+      coordinate, or -1 if there is none.
+    */
+
+    private int findSpan(int band, int px)
+    {
+        int from = spanStarts[band] / 2;
+        int low = from;
+        int high = spanStarts[band + 1] / 2 - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (spans[middle * 2] <= px) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high >= from ? high * 2 : -1;
+    }
+
+    /**
+      Return the index of the first band whose bottom is greater than the specified Y coordinate.
+    */
+
+    private int firstBandBelow(int py)
+    {
+        int low = 0;
+        int high = bottoms.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (bottoms[middle] <= py) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static @NotNull Region combine(@NotNull Region a, @NotNull Region b, int op)
+    {
+        Builder builder = new Builder(a.tops.length + b.tops.length, a.spans.length + b.spans.length);
+
+        // Visit each interval of Y coordinates in which neither region changes
+
+        int i = 0;
+        int j = 0;
+        int y = Math.min(a.tops[0], b.tops[0]);
+        while (i < a.tops.length || j < b.tops.length) {
+            boolean inA = i < a.tops.length && a.tops[i] <= y;
+            boolean inB = j < b.tops.length && b.tops[j] <= y;
+            int next = Integer.MAX_VALUE;
+            if (i < a.tops.length) {
+                next = Math.min(next, inA ? a.bottoms[i] : a.tops[i]);
+            }
+            if (j < b.tops.length) {
+                next = Math.min(next, inB ? b.bottoms[j] : b.tops[j]);
+            }
+
+            if (inA || inB) {
+                int aFrom = inA ? a.spanStarts[i] : 0;
+                int aTo = inA ? a.spanStarts[i + 1] : 0;
+                int bFrom = inB ? b.spanStarts[j] : 0;
+                int bTo = inB ? b.spanStarts[j + 1] : 0;
+                builder.addBand(y, next, a.spans, aFrom, aTo, b.spans, bFrom, bTo, op);
+            }
+
+            if (inA && a.bottoms[i] == next) {
+                i++;
+            }
+            if (inB && b.bottoms[j] == next) {
+                j++;
+            }
+            y = next;
+        }
+        return builder.build();
+    }
+
+    private static boolean isIncluded(boolean inA, boolean inB, int op)
+    {
+        switch (op) {
+            case UNION:
+                return inA || inB;
+            case INTERSECTION:
+                return inA && inB;
+            default:
+                return inA && !inB;
+        }
+    }
+
+    private static final class Builder
+    {
+        private @NotNull int[] tops;
+        private @NotNull int[] bottoms;
+        private @NotNull int[] spanStarts;
+        private @NotNull int[] spans;
+        private int bandCount;
+        private int spanEnd;
+
+        Builder(int bandCapacity, int spanCapacity)
+        {
+            tops = new int[bandCapacity];
+            bottoms = new int[bandCapacity];
+            spanStarts = new int[bandCapacity + 1];
+            spans = new int[spanCapacity];
+        }
+
+        /**
+          Add a band whose spans are the result of combining two sets of spans. The band is merged with the previous
+          band if they are adjacent and have the same spans. An empty band is discarded.
+        */
+
+        void addBand(int top, int bottom,
+                     @NotNull int[] a, int aFrom, int aTo, @NotNull int[] b, int bFrom, int bTo, int op)
+        {
+            int start = spanEnd;
+            boolean inA = false;
+            boolean inB = false;
+            boolean included = false;
+            int i = aFrom;
+            int j = bFrom;
+            while (i < aTo || j < bTo) {
+                int x = Math.min(i < aTo ? a[i] : Integer.MAX_VALUE, j < bTo ? b[j] : Integer.MAX_VALUE);
+                if (i < aTo && a[i] == x) {
+                    inA = !inA;
+                    i++;
+                }
+                if (j < bTo && b[j] == x) {
+                    inB = !inB;
+                    j++;
+                }
+                boolean nowIncluded = isIncluded(inA, inB, op);
+                if (nowIncluded != included) {
+                    appendSpanBoundary(x);
+                    included = nowIncluded;
+                }
+            }
+
+            if (spanEnd == start) {
+                return;
+            }
+
+            if (bandCount > 0 && bottoms[bandCount - 1] == top && isSameAsPrevious(start)) {
+                bottoms[bandCount - 1] = bottom;
+                spanEnd = start;
+                return;
+            }
+
+            if (bandCount == tops.length) {
+                int capacity = IndexSort.grow(bandCount, bandCount + 1);
+                tops = Arrays.copyOf(tops, capacity);
+                bottoms = Arrays.copyOf(bottoms, capacity);
+                spanStarts = Arrays.copyOf(spanStarts, capacity + 1);
+            }
+            tops[bandCount] = top;
+            bottoms[bandCount] = bottom;
+            spanStarts[bandCount] = start;
+            bandCount++;
+            spanStarts[bandCount] = spanEnd;
+        }
+
+        private boolean isSameAsPrevious(int start)
+        {
+            int previousStart = spanStarts[bandCount - 1];
+            int length = start - previousStart;
+            if (spanEnd - start != length) {
+                return false;
+            }
+            for (int k = 0; k < length; k++) {
+                if (spans[previousStart + k] != spans[start + k]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void appendSpanBoundary(int x)
+        {
+            if (spanEnd == spans.length) {
+                spans = Arrays.copyOf(spans, IndexSort.grow(spans.length, spanEnd + 1));
+            }
+            spans[spanEnd++] = x;
+        }
+
+        @NotNull Region build()
+        {
+            if (bandCount == 0) {
+                return EMPTY;
+            }
+            return new Region(Arrays.copyOf(tops, bandCount), Arrays.copyOf(bottoms, bandCount),
+              Arrays.copyOf(spanStarts, bandCount + 1), Arrays.copyOf(spans, spanEnd));
+        }
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof Region)) return false;
+        Region that = (Region) o;
+        return Arrays.equals(tops, that.tops)
+          && Arrays.equals(bottoms, that.bottoms)
+          && Arrays.equals(spanStarts, that.spanStarts)
+          && Arrays.equals(spans, that.spans);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = Arrays.hashCode(tops);
+        result = 31 * result + Arrays.hashCode(bottoms);
+        result = 31 * result + Arrays.hashCode(spans);
+        return result;
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        return "Region" + getRectangles();
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.*;
+
+/**
+  The vertical geometry of a list of rows of varying heights, such as the rows of a virtualized list or table. Rows
+  are stacked vertically starting at Y = 0, and all rows have the same width, starting at X = 0.
+  <p>
+  The row heights are indexed by a Fenwick tree of prefix sums, so that the position of a row, the row at a Y
+  coordinate, and the rows visible in a viewport are found in logarithmic time, and a row height can be changed or a
+  row appended in logarithmic time. Inserting or removing a row other than at the end takes linear time.
+  <p>
+  This class is not thread safe.
+*/
+
+public final class RowGeometry
+{
+    /**
+      Create a row geometry with no rows.
+      @param width The width of the rows.
+      @throws IllegalArgumentException if {@code width} is negative.
+    */
+
+    public static @NotNull RowGeometry create(int width)
+      throws IllegalArgumentException
+    {
+        return create(width, 0, 0);
+    }
+
+    /**
+      Create a row geometry with rows of equal height.
+      @param width The width of the rows.
+      @param rowCount The number of rows.
+      @param rowHeight The height of each row.
+      @throws IllegalArgumentException if {@code width}, {@code rowCount}, or {@code rowHeight} is negative.
+    */
+
+    public static @NotNull RowGeometry create(int width, int rowCount, int rowHeight)
+      throws IllegalArgumentException
+    {
+        if (rowCount < 0) {
+            throw new IllegalArgumentException("Invalid row count: " + rowCount);
+        }
+        checkHeight(rowHeight);
+        int[] heights = new int[Math.max(rowCount, 10)];
+        Arrays.fill(heights, 0, rowCount, rowHeight);
+        return new RowGeometry(width, heights, rowCount);
+    }
+
+    /**
+      Create a row geometry.
+      @param width The width of the rows.
+      @param rowHeights The heights of the rows.
+      @throws IllegalArgumentException if {@code width} or a row height is negative.
+    */
+
+    public static @NotNull RowGeometry create(int width, @NotNull int[] rowHeights)
+      throws IllegalArgumentException
+    {
+        for (int h : rowHeights) {
+            checkHeight(h);
+        }
+        return new RowGeometry(width, Arrays.copyOf(rowHeights, Math.max(rowHeights.length, 10)), rowHeights.length);
+    }
+
+    private int width;
+    private @NotNull int[] heights;
+    private @NotNull long[] tree;  // one-based Fenwick tree; tree[i] is the sum of heights (i - (i & -i), i]
+    private int count;
+
+    private RowGeometry(int width, @NotNull int[] heights, int count)
+      throws IllegalArgumentException
+    {
+        if (width < 0) {
+            throw new IllegalArgumentException("Invalid width: " + width);
+        }
+        this.width = width;
+        this.heights = heights;
+        this.count = count;
+        this.tree = new long[heights.length + 1];
+        rebuild();
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+      Set the width of the rows.
+      @throws IllegalArgumentException if {@code width} is negative.
+    */
+
+    public void setWidth(int width)
+      throws IllegalArgumentException
+    {
+        if (width < 0) {
+            throw new IllegalArgumentException("Invalid width: " + width);
+        }
+        this.width = width;
+    }
+
+    public int getRowCount()
+    {
+        return count;
+    }
+
+    /**
+      Return the total height of the rows.
+    */
+
+    public long getHeight()
+    {
+        return prefixSum(count);
+    }
+
+    /**
+      Return the height of a row.
+      @throws IndexOutOfBoundsException if {@code row} is not a valid row index.
+    */
+
+    public int getRowHeight(int row)
+      throws IndexOutOfBoundsException
+    {
+        checkIndex(row);
+        return heights[row];
+    }
+
+    /**
+      Change the height of a row.
+      @throws IndexOutOfBoundsException if {@code row} is not a valid row index.
+      @throws IllegalArgumentException if {@code height} is negative.
+    */
+
+    public void setRowHeight(int row, int height)
+      throws IndexOutOfBoundsException, IllegalArgumentException
+    {
+        checkIndex(row);
+        checkHeight(height);
+        int delta = height - heights[row];
+        if (delta != 0) {
+            heights[row] = height;
+            for (int i = row + 1; i <= count; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+    }
+
+    /**
+      Return the Y coordinate of the top of a row.
+      @throws IndexOutOfBoundsException if {@code row} is not a valid row index.
+    */
+
+    public long getRowTop(int row)
+      throws IndexOutOfBoundsException
+    {
+        checkIndex(row);
+        return prefixSum(row);
+    }
+
+    /**
+      Return the bounds of a row.
+      @throws IndexOutOfBoundsException if {@code row} is not a valid row index.
+      @throws ArithmeticException if the top of the row cannot be represented as an {@code int}.
+    */
+
+    public @NotNull Bounds getRowBounds(int row)
+      throws IndexOutOfBoundsException, ArithmeticException
+    {
+        return Bounds.create(0, Math.toIntExact(getRowTop(row)), width, heights[row]);
+    }
+
+    /**
+      Return the row that contains a Y coordinate. Rows of zero height do not contain any coordinates.
+      @return the row index, or -1 if no row contains {@code y}.
+    */
+
+    public int getRowAt(long y)
+    {
+        if (y < 0 || count == 0) {
+            return -1;
+        }
+
+        // Descend the implicit tree to find the last position whose prefix sum does not exceed y
+
+        int position = 0;
+        long remaining = y;
+        for (int step = Integer.highestOneBit(count); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= count && tree[next] <= remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        return position < count ? position : -1;
+    }
+
+    /**
+      Return the index of the first row that is at least partly visible in a viewport. Only the vertical extent of the
+      viewport is considered.
+      @return the index of the first visible row, or the index after the last visible row if no rows are visible.
+    */
+
+    public int getFirstVisibleRow(@NotNull Bounds viewport)
+    {
+        if (viewport.height <= 0) {
+            return getRowAtOrAfter(viewport.y);
+        }
+        if ((long) viewport.y + viewport.height <= 0) {
+            return 0;
+        }
+        int row = getRowAt(Math.max(0, viewport.y));
+        return row >= 0 ? row : count;
+    }
+
+    /**
+      Return the index after the last row that is at least partly visible in a viewport. Only the vertical extent of
+      the viewport is considered.
+    */
+
+    public int getEndVisibleRow(@NotNull Bounds viewport)
+    {
+        if (viewport.height <= 0) {
+            return getRowAtOrAfter(viewport.y);
+        }
+        long bottom = (long) viewport.y + viewport.height;  // exclusive
+        if (bottom <= 0) {
+            return 0;
+        }
+        if (bottom >= getHeight()) {
+            return count;
+        }
+        return getRowAt(bottom - 1) + 1;
+    }
+
+    /**
+      Visit the bounds of the rows that are at least partly visible in a viewport, in order.
+      @throws ArithmeticException if the top of a row cannot be represented as an {@code int}.
+    */
+
+    public void forEachVisibleRow(@NotNull Bounds viewport, @NotNull BoundsArray.Visitor visitor)
+      throws ArithmeticException
+    {
+        int first = getFirstVisibleRow(viewport);
+        int end = getEndVisibleRow(viewport);
+        if (first < end) {
+            long y = prefixSum(first);
+            for (int row = first; row < end; row++) {
+                int h = heights[row];
+                visitor.visit(row, 0, Math.toIntExact(y), width, h);
+                y += h;
+            }
+        }
+    }
+
+    /**
+      Append a row.
+      @throws IllegalArgumentException if {@code height} is negative.
+    */
+
+    public void addRow(int height)
+      throws IllegalArgumentException
+    {
+        checkHeight(height);
+        if (count == heights.length) {
+            int capacity = IndexSort.grow(heights.length, count + 1);
+            heights = Arrays.copyOf(heights, capacity);
+            tree = Arrays.copyOf(tree, capacity + 1);
+        }
+        heights[count] = height;
+        int i = count + 1;
+        tree[i] = height + prefixSum(i - 1) - prefixSum(i - (i & -i));
+        count++;
+    }
+
+    /**
+      Insert a row. This operation takes linear time unless the row is added at the end.
+      @throws IndexOutOfBoundsException if {@code row} is negative or greater than the number of rows.
+      @throws IllegalArgumentException if {@code height} is negative.
+    */
+
+    public void insertRow(int row, int height)
+      throws IndexOutOfBoundsException, IllegalArgumentException
+    {
+        if (row < 0 || row > count) {
+            throw new IndexOutOfBoundsException("Invalid row index: " + row);
+        }
+        if (row == count) {
+            addRow(height);
+            return;
+        }
+        checkHeight(height);
+        if (count == heights.length) {
+            int capacity = IndexSort.grow(heights.length, count + 1);
+            heights = Arrays.copyOf(heights, capacity);
+            tree = new long[capacity + 1];
+        }
+        System.arraycopy(heights, row, heights, row + 1, count - row);
+        heights[row] = height;
+        count++;
+        rebuild();
+    }
+
+    /**
+      Remove a row. This operation takes linear time unless the last row is removed.
+      @throws IndexOutOfBoundsException if {@code row} is not a valid row index.
+    */
+
+    public void removeRow(int row)
+      throws IndexOutOfBoundsException
+    {
+        checkIndex(row);
+        count--;
+        if (row < count) {
+            System.arraycopy(heights, row + 1, heights, row, count - row);
+            rebuild();
+        }
+    }
+
+    /**
+      Remove all rows.
+    */
+
+    public void clear()
+    {
+        count = 0;
+    }
+
+    private long prefixSum(int end)
+    {
+        long sum = 0;
+        for (int i = end; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void rebuild()
+    {
+        Arrays.fill(tree, 0);
+        for (int i = 1; i <= count; i++) {
+            tree[i] += heights[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= count) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    /**
+      Return the index of the first row whose top is at or below a Y coordinate.
+    */
+
+    private int getRowAtOrAfter(long y)
+    {
+        if (y <= 0) {
+            return 0;
+        }
+        int row = getRowAt(y - 1);
+        return row >= 0 ? row + 1 : count;
+    }
+
+    private void checkIndex(int row)
+      throws IndexOutOfBoundsException
+    {
+        if (row < 0 || row >= count) {
+            throw new IndexOutOfBoundsException("Invalid row index: " + row);
+        }
+    }
+
+    private static void checkHeight(int height)
+      throws IllegalArgumentException
+    {
+        if (height < 0) {
+            throw new IllegalArgumentException("Invalid row height: " + height);
+        }
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        return "RowGeometry{" +
+                 "rows=" + count +
+                 ", width=" + width +
+                 ", height=" + getHeight() +
+                 '}';
+    }
+}
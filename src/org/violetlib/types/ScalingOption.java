@@ -8,8 +8,6 @@
 
 package org.violetlib.types;
 
-import java.util.Objects;
-
 import org.jetbrains.annotations.*;
 import org.violetlib.annotations.Immutable;
 
@@ -84,6 +82,147 @@ public @Immutable class ScalingOption
         return this == ACTUAL_SIZE ? 1 : 0;
     }
 
+    /**
+      Return the size of a shape after scaling according to this option.
+      @param source The size of the shape.
+      @param available The available space.
+      @return the scaled size.
+    */
+
+    public @NotNull Size fit(@NotNull Size source, @NotNull Size available)
+    {
+        long s = fit(source.width, source.height, available.width, available.height);
+        return Size.create(PackedSize.width(s), PackedSize.height(s));
+    }
+
+    /**
+      Return the bounds of a shape after scaling according to this option and centering it in the available space.
+      A shape that is larger than the available space extends beyond it equally on both sides.
+      @param source The size of the shape.
+      @param available The available space.
+      @return the bounds of the scaled shape.
+    */
+
+    public @NotNull Bounds place(@NotNull Size source, @NotNull Bounds available)
+    {
+        long s = fit(source.width, source.height, available.width, available.height);
+        int width = PackedSize.width(s);
+        int height = PackedSize.height(s);
+        return Bounds.create(available.x + (available.width - width) / 2,
+          available.y + (available.height - height) / 2, width, height);
+    }
+
+    /**
+      Return the size of a shape after scaling according to this option. This method does not allocate.
+      @param sourceWidth The width of the shape.
+      @param sourceHeight The height of the shape.
+      @param availableWidth The width of the available space.
+      @param availableHeight The height of the available space.
+      @return the scaled size, packed as defined by {@link PackedSize}.
+      @throws IllegalArgumentException if a width or height is negative.
+    */
+
+    public long fit(int sourceWidth, int sourceHeight, int availableWidth, int availableHeight)
+      throws IllegalArgumentException
+    {
+        if (sourceWidth < 0 || sourceHeight < 0) {
+            throw new IllegalArgumentException("Invalid source size: " + sourceWidth + "x" + sourceHeight);
+        }
+        if (availableWidth < 0 || availableHeight < 0) {
+            throw new IllegalArgumentException("Invalid available size: " + availableWidth + "x" + availableHeight);
+        }
+
+        if (this == SCALE_FREE) {
+            return PackedSize.pack(availableWidth, availableHeight);
+        }
+
+        if (this == SCALE_PRESERVE || this == SCALE_PRESERVE_REDUCE) {
+            if (this == SCALE_PRESERVE_REDUCE && sourceWidth <= availableWidth && sourceHeight <= availableHeight) {
+                return PackedSize.pack(sourceWidth, sourceHeight);
+            }
+            if (sourceWidth == 0 || sourceHeight == 0) {
+                return PackedSize.ZERO;
+            }
+
+            // Compare the aspect ratios exactly to determine which dimension limits the scale factor
+
+            long sw = sourceWidth;
+            long sh = sourceHeight;
+            if ((long) availableWidth * sh <= (long) availableHeight * sw) {
+                return PackedSize.pack(availableWidth, (int) ((sh * availableWidth + sw / 2) / sw));
+            } else {
+                return PackedSize.pack((int) ((sw * availableHeight + sh / 2) / sh), availableHeight);
+            }
+        }
+
+        double scaleFactor = getScaleFactor();
+        if (scaleFactor == 1 || scaleFactor == 0) {
+            return PackedSize.pack(sourceWidth, sourceHeight);
+        }
+        return PackedSize.pack(scale(sourceWidth, scaleFactor), scale(sourceHeight, scaleFactor));
+    }
+
+    /**
+      Scale multiple shapes according to this option. The sizes are stored in arrays as consecutive pairs of width and
+      height, as in a {@link SizeArray}. The source and result arrays may be the same.
+      @param sizes The sizes of the shapes.
+      @param offset The index in {@code sizes} of the width of the first shape.
+      @param count The number of shapes.
+      @param availableWidth The width of the available space.
+      @param availableHeight The height of the available space.
+      @param result The array to receive the scaled sizes.
+      @param resultOffset The index in {@code result} to receive the width of the first scaled shape.
+      @throws IllegalArgumentException if a width or height is negative.
+    */
+
+    public void fitAll(@NotNull int[] sizes, int offset, int count, int availableWidth, int availableHeight,
+                       @NotNull int[] result, int resultOffset)
+      throws IllegalArgumentException
+    {
+        for (int i = 0; i < count; i++) {
+            int index = offset + i * 2;
+            long s = fit(sizes[index], sizes[index + 1], availableWidth, availableHeight);
+            int resultIndex = resultOffset + i * 2;
+            result[resultIndex] = PackedSize.width(s);
+            result[resultIndex + 1] = PackedSize.height(s);
+        }
+    }
+
+    /**
+      Scale multiple shapes according to this option and center them in the available space. The sizes are stored as
+      consecutive pairs of width and height, as in a {@link SizeArray}. The bounds are stored as consecutive groups of
+      X, Y, width, and height, as in a {@link BoundsArray}.
+      @param sizes The sizes of the shapes.
+      @param offset The index in {@code sizes} of the width of the first shape.
+      @param count The number of shapes.
+      @param available The available space.
+      @param result The array to receive the bounds of the scaled shapes.
+      @param resultOffset The index in {@code result} to receive the X coordinate of the first scaled shape.
+      @throws IllegalArgumentException if a width or height is negative.
+    */
+
+    public void placeAll(@NotNull int[] sizes, int offset, int count, @NotNull Bounds available,
+                         @NotNull int[] result, int resultOffset)
+      throws IllegalArgumentException
+    {
+        for (int i = 0; i < count; i++) {
+            int index = offset + i * 2;
+            long s = fit(sizes[index], sizes[index + 1], available.width, available.height);
+            int width = PackedSize.width(s);
+            int height = PackedSize.height(s);
+            int resultIndex = resultOffset + i * 4;
+            result[resultIndex] = available.x + (available.width - width) / 2;
+            result[resultIndex + 1] = available.y + (available.height - height) / 2;
+            result[resultIndex + 2] = width;
+            result[resultIndex + 3] = height;
+        }
+    }
+
+    private static int scale(int dimension, double scaleFactor)
+    {
+        return (int) Math.min(Integer.MAX_VALUE, Math.round(dimension * scaleFactor));
+    }
+
     @Override
     public @NotNull String toString()
     {
@@ -131,7 +270,7 @@ public @Immutable class ScalingOption
         @Override
         public int hashCode()
         {
-            return Objects.hash(scaleFactor);
+            return Double.hashCode(scaleFactor);
         }
     }
 }
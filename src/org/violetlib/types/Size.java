@@ -8,8 +8,6 @@
 
 package org.violetlib.types;
 
-import java.util.Objects;
-
 import org.jetbrains.annotations.*;
 import org.violetlib.annotations.Immutable;
 import org.violetlib.annotations.Value;
@@ -24,17 +22,37 @@ public final @Immutable @Value class Size
       Create a description of the size of a rectangular area.
       @param width The width.
       @param height The height.
-      @return the size description.
+      @return the size description. Small sizes are canonical instances.
       @throws IllegalArgumentException if {@code width} or {@code height} is negative.
     */
 
     public static @NotNull Size create(int width, int height)
       throws IllegalArgumentException
     {
+        if (width >= 0 && width < CACHE_LIMIT && height >= 0 && height < CACHE_LIMIT) {
+            int index = width * CACHE_LIMIT + height;
+            Size s = CACHE.get(index);
+            return s != null ? s : CACHE.install(index, new Size(width, height));
+        }
         return new Size(width, height);
     }
 
-    public static final @NotNull Size ZERO = new Size(0, 0);
+    /**
+      Return statistics on the use of canonical instances by {@link #create}. Only sizes in the canonicalized range
+      are counted. Statistics are recorded only if the system property
+      {@code org.violetlib.types.recordCacheStatistics} is {@code true}; otherwise the counts are zero.
+    */
+
+    public static @NotNull CacheStatistics getCacheStatistics()
+    {
+        return CACHE.getStatistics();
+    }
+
+    // Sizes whose width and height are both less than this limit are canonicalized
+    private static final int CACHE_LIMIT = 64;
+    private static final @NotNull ValueTable<Size> CACHE = new ValueTable<>(CACHE_LIMIT * CACHE_LIMIT);
+
+    public static final @NotNull Size ZERO = CACHE.install(0, new Size(0, 0));
 
     public final int width;
     public final int height;
@@ -66,7 +84,7 @@ public final @Immutable @Value class Size
     @Override
     public int hashCode()
     {
-        return Objects.hash(width, height);
+        return 31 * width + height;
     }
 
     @Override
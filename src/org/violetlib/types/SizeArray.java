@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A growable list of sizes stored as primitive values. Each element is stored as two consecutive integers
+  (width, height), so that large collections do not require a {@link Size} object per element.
+  This class is not thread safe.
+*/
+
+public final class SizeArray
+{
+    /**
+      An operation that accepts the dimensions of an element.
+    */
+
+    public interface Visitor
+    {
+        void visit(int index, int width, int height);
+    }
+
+    public static @NotNull SizeArray create()
+    {
+        return new SizeArray(10);
+    }
+
+    /**
+      Create an empty list.
+      @param initialCapacity The number of elements that can be added without growing the storage.
+      @throws IllegalArgumentException if {@code initialCapacity} is negative.
+    */
+
+    public static @NotNull SizeArray create(int initialCapacity)
+      throws IllegalArgumentException
+    {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + initialCapacity);
+        }
+        return new SizeArray(initialCapacity);
+    }
+
+    private static final int STRIDE = 2;
+
+    private @NotNull int[] data;
+    private int count;
+
+    private SizeArray(int initialCapacity)
+    {
+        this.data = new int[initialCapacity * STRIDE];
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    public boolean isEmpty()
+    {
+        return count == 0;
+    }
+
+    public void clear()
+    {
+        count = 0;
+    }
+
+    /**
+      Ensure that the specified number of elements can be stored without growing the storage.
+    */
+
+    public void ensureCapacity(int capacity)
+    {
+        if (capacity * STRIDE > data.length) {
+            data = Arrays.copyOf(data, IndexSort.grow(data.length / STRIDE, capacity) * STRIDE);
+        }
+    }
+
+    /**
+      Add an element.
+      @throws IllegalArgumentException if {@code width} or {@code height} is negative.
+    */
+
+    public void add(int width, int height)
+      throws IllegalArgumentException
+    {
+        validate(width, height);
+        ensureCapacity(count + 1);
+        int base = count * STRIDE;
+        data[base] = width;
+        data[base + 1] = height;
+        count++;
+    }
+
+    public void add(@NotNull Size s)
+    {
+        add(s.width, s.height);
+    }
+
+    public void addAll(@NotNull Iterable<Size> ss)
+    {
+        for (Size s : ss) {
+            add(s);
+        }
+    }
+
+    public void addAll(@NotNull SizeArray a)
+    {
+        ensureCapacity(count + a.count);
+        System.arraycopy(a.data, 0, data, count * STRIDE, a.count * STRIDE);
+        count += a.count;
+    }
+
+    /**
+      Replace an element.
+      @throws IndexOutOfBoundsException if {@code index} is not valid.
+      @throws IllegalArgumentException if {@code width} or {@code height} is negative.
+    */
+
+    public void set(int index, int width, int height)
+      throws IndexOutOfBoundsException, IllegalArgumentException
+    {
+        int base = base(index);
+        validate(width, height);
+        data[base] = width;
+        data[base + 1] = height;
+    }
+
+    public void set(int index, @NotNull Size s)
+      throws IndexOutOfBoundsException
+    {
+        set(index, s.width, s.height);
+    }
+
+    /**
+      Remove an element. Subsequent elements are shifted down.
+      @throws IndexOutOfBoundsException if {@code index} is not valid.
+    */
+
+    public void remove(int index)
+      throws IndexOutOfBoundsException
+    {
+        int base = base(index);
+        System.arraycopy(data, base + STRIDE, data, base, (count - index - 1) * STRIDE);
+        count--;
+    }
+
+    public @NotNull Size get(int index)
+      throws IndexOutOfBoundsException
+    {
+        int base = base(index);
+        return Size.create(data[base], data[base + 1]);
+    }
+
+    public int getWidth(int index)
+      throws IndexOutOfBoundsException
+    {
+        return data[base(index)];
+    }
+
+    public int getHeight(int index)
+      throws IndexOutOfBoundsException
+    {
+        return data[base(index) + 1];
+    }
+
+    /**
+      Visit the elements in order.
+    */
+
+    public void forEach(@NotNull Visitor v)
+    {
+        for (int i = 0; i < count; i++) {
+            int base = i * STRIDE;
+            v.visit(i, data[base], data[base + 1]);
+        }
+    }
+
+    /**
+      Sort the elements. The sort is stable.
+      @param c The comparator, which is called with the indexes of elements in their order prior to sorting. The
+      comparator may use the accessors of this list to obtain the dimensions of the elements.
+    */
+
+    public void sort(@NotNull IndexComparator c)
+    {
+        data = IndexSort.sort(data, count, STRIDE, c);
+    }
+
+    /**
+      Sort the elements by area, smallest first.
+    */
+
+    public void sortByArea()
+    {
+        int[] d = data;
+        sort((i, j) -> Long.compare((long) d[i * STRIDE] * d[i * STRIDE + 1], (long) d[j * STRIDE] * d[j * STRIDE + 1]));
+    }
+
+    public @NotNull List<Size> toList()
+    {
+        List<Size> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(get(i));
+        }
+        return result;
+    }
+
+    /**
+      Release unused storage.
+    */
+
+    public void trimToSize()
+    {
+        if (data.length > count * STRIDE) {
+            data = Arrays.copyOf(data, count * STRIDE);
+        }
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            int base = i * STRIDE;
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(data[base]).append('x').append(data[base + 1]);
+        }
+        return sb.append(']').toString();
+    }
+
+    private int base(int index)
+      throws IndexOutOfBoundsException
+    {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        }
+        return index * STRIDE;
+    }
+
+    private static void validate(int width, int height)
+      throws IllegalArgumentException
+    {
+        if (width < 0) {
+            throw new IllegalArgumentException("Invalid width: " + width);
+        }
+
+        if (height < 0) {
+            throw new IllegalArgumentException("Invalid height: " + height);
+        }
+    }
+}
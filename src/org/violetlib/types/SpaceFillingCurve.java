@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.*;
+
+/**
+  Mappings between positions and their order along a space-filling curve. Sorting positions in curve order places
+  positions that are near each other in space near each other in the sorted order, which improves memory locality for
+  tiled processing and for building spatial indexes.
+  <p>
+  Two curves are supported. The Z-order (Morton) curve is the cheapest to compute: the code is formed by interleaving
+  the bits of the coordinates. The Hilbert curve has better locality: consecutive codes are always adjacent positions.
+  <p>
+  The curves cover the entire range of {@code int} coordinates. Codes are 64-bit values that must be compared as
+  unsigned values; see {@link Long#compareUnsigned}.
+*/
+
+public final class SpaceFillingCurve
+{
+    // Coordinates are biased so that negative coordinates precede positive coordinates
+    private static final int BIAS = Integer.MIN_VALUE;
+
+    /**
+      Return the Z-order (Morton) code of a position. The bits of the X coordinate occupy the even bit positions of
+      the code; the bits of the Y coordinate occupy the odd bit positions.
+    */
+
+    public static long mortonEncode(int x, int y)
+    {
+        return spread(x ^ BIAS) | spread(y ^ BIAS) << 1;
+    }
+
+    /**
+      Return the position with the specified Z-order (Morton) code.
+      @return the position, packed as defined by {@link PackedPosition}.
+    */
+
+    public static long mortonDecode(long code)
+    {
+        return PackedPosition.pack(compact(code) ^ BIAS, compact(code >>> 1) ^ BIAS);
+    }
+
+    /**
+      Return the Hilbert curve code of a position.
+    */
+
+    public static long hilbertEncode(int x, int y)
+    {
+        long ux = (x ^ BIAS) & 0xFFFFFFFFL;
+        long uy = (y ^ BIAS) & 0xFFFFFFFFL;
+        long code = 0;
+        for (int level = 31; level >= 0; level--) {
+            int rx = (int) (ux >>> level) & 1;
+            int ry = (int) (uy >>> level) & 1;
+            code = code << 2 | ((3 * rx) ^ ry);
+
+            // Rotate the quadrant so that the curve within it has the standard orientation
+
+            if (ry == 0) {
+                if (rx == 1) {
+                    ux = ~ux & 0xFFFFFFFFL;
+                    uy = ~uy & 0xFFFFFFFFL;
+                }
+                long t = ux;
+                ux = uy;
+                uy = t;
+            }
+        }
+        return code;
+    }
+
+    /**
+      Return the position with the specified Hilbert curve code.
+      @return the position, packed as defined by {@link PackedPosition}.
+    */
+
+    public static long hilbertDecode(long code)
+    {
+        long ux = 0;
+        long uy = 0;
+        for (int level = 0; level < 32; level++) {
+            int quadrant = (int) (code >>> (2 * level)) & 3;
+            int rx = quadrant >>> 1;
+            int ry = (quadrant ^ rx) & 1;
+            long side = 1L << level;
+            if (ry == 0) {
+                if (rx == 1) {
+                    ux = side - 1 - ux;
+                    uy = side - 1 - uy;
+                }
+                long t = ux;
+                ux = uy;
+                uy = t;
+            }
+            ux += side * rx;
+            uy += side * ry;
+        }
+        return PackedPosition.pack((int) ux ^ BIAS, (int) uy ^ BIAS);
+    }
+
+    /**
+      Sort packed positions in Z-order (Morton) curve order. The sort is stable and takes linear time.
+      @param positions The positions, packed as defined by {@link PackedPosition}.
+      @param offset The index of the first position to sort.
+      @param count The number of positions to sort.
+    */
+
+    public static void sortByMorton(@NotNull long[] positions, int offset, int count)
+    {
+        long[] codes = new long[count];
+        for (int i = 0; i < count; i++) {
+            long p = positions[offset + i];
+            codes[i] = mortonEncode(PackedPosition.x(p), PackedPosition.y(p));
+        }
+        permute(positions, offset, sortOrder(codes, count));
+    }
+
+    /**
+      Sort packed positions in Hilbert curve order. The sort is stable and takes linear time.
+      @param positions The positions, packed as defined by {@link PackedPosition}.
+      @param offset The index of the first position to sort.
+      @param count The number of positions to sort.
+    */
+
+    public static void sortByHilbert(@NotNull long[] positions, int offset, int count)
+    {
+        long[] codes = new long[count];
+        for (int i = 0; i < count; i++) {
+            long p = positions[offset + i];
+            codes[i] = hilbertEncode(PackedPosition.x(p), PackedPosition.y(p));
+        }
+        permute(positions, offset, sortOrder(codes, count));
+    }
+
+    /**
+      Return the order of a set of codes, using a least significant digit radix sort. Codes are compared as unsigned
+      values. The sort is stable.
+      @param codes The codes. The contents of this array are not preserved.
+      @param count The number of codes.
+      @return an array whose i'th element is the original index of the i'th smallest code.
+    */
+
+    static @NotNull int[] sortOrder(@NotNull long[] codes, int count)
+    {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        if (count < 2) {
+            return order;
+        }
+
+        long[] codeBuffer = new long[count];
+        int[] orderBuffer = new int[count];
+        int[] counts = new int[256];
+
+        // Passes on digits that are the same for all codes do not change the order and are skipped
+
+        long differences = 0;
+        for (int i = 1; i < count; i++) {
+            differences |= codes[i] ^ codes[0];
+        }
+
+        for (int shift = 0; shift < 64; shift += 8) {
+            if ((differences >>> shift & 0xFF) == 0) {
+                continue;
+            }
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < count; i++) {
+                counts[(int) (codes[i] >>> shift) & 0xFF]++;
+            }
+            int total = 0;
+            for (int d = 0; d < 256; d++) {
+                int c = counts[d];
+                counts[d] = total;
+                total += c;
+            }
+            for (int i = 0; i < count; i++) {
+                int target = counts[(int) (codes[i] >>> shift) & 0xFF]++;
+                codeBuffer[target] = codes[i];
+                orderBuffer[target] = order[i];
+            }
+            long[] ct = codes;
+            codes = codeBuffer;
+            codeBuffer = ct;
+            int[] ot = order;
+            order = orderBuffer;
+            orderBuffer = ot;
+        }
+        return order;
+    }
+
+    private static void permute(@NotNull long[] values, int offset, @NotNull int[] order)
+    {
+        long[] copy = new long[order.length];
+        System.arraycopy(values, offset, copy, 0, order.length);
+        for (int i = 0; i < order.length; i++) {
+            values[offset + i] = copy[order[i]];
+        }
+    }
+
+    /**
+      Spread the bits of a 32-bit value into the even bit positions of a 64-bit value.
+    */
+
+    private static long spread(int value)
+    {
+        long v = value & 0xFFFFFFFFL;
+        v = (v | v << 16) & 0x0000FFFF0000FFFFL;
+        v = (v | v << 8) & 0x00FF00FF00FF00FFL;
+        v = (v | v << 4) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | v << 2) & 0x3333333333333333L;
+        v = (v | v << 1) & 0x5555555555555555L;
+        return v;
+    }
+
+    /**
+      Gather the even bits of a 64-bit value into a 32-bit value.
+    */
+
+    private static int compact(long value)
+    {
+        long v = value & 0x5555555555555555L;
+        v = (v | v >>> 1) & 0x3333333333333333L;
+        v = (v | v >>> 2) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | v >>> 4) & 0x00FF00FF00FF00FFL;
+        v = (v | v >>> 8) & 0x0000FFFF0000FFFFL;
+        v = (v | v >>> 16) & 0x00000000FFFFFFFFL;
+        return (int) v;
+    }
+
+    private SpaceFillingCurve()
+    {
+    }
+}
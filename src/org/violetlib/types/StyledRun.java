@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+import org.violetlib.annotations.Value;
+
+/**
+  A sequence of characters displayed using one font and one color.
+*/
+
+public final @Immutable @Value class StyledRun
+{
+    public static @NotNull StyledRun create(@NotNull String text,
+                                            @NotNull FontDescription font,
+                                            @NotNull ColorDescription color)
+    {
+        return new StyledRun(text, font, color);
+    }
+
+    private final @NotNull String text;
+    private final @NotNull FontDescription font;
+    private final @NotNull ColorDescription color;
+
+    private StyledRun(@NotNull String text, @NotNull FontDescription font, @NotNull ColorDescription color)
+    {
+        this.text = text;
+        this.font = font;
+        this.color = color;
+    }
+
+    public @NotNull String getText()
+    {
+        return text;
+    }
+
+    public @NotNull FontDescription getFont()
+    {
+        return font;
+    }
+
+    public @NotNull ColorDescription getColor()
+    {
+        return color;
+    }
+
+    public int length()
+    {
+        return text.length();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof StyledRun)) return false;
+        StyledRun that = (StyledRun) o;
+        return text.equals(that.text) && font.equals(that.font) && color.equals(that.color);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = text.hashCode();
+        result = 31 * result + font.hashCode();
+        result = 31 * result + color.hashCode();
+        return result;
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        return "StyledRun{" +
+                 "text=" + text +
+                 ", font=" + font +
+                 ", color=" + color +
+                 '}';
+    }
+}
@@ -0,0 +1,520 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A layout of paragraphs of styled text into lines of a specified width. Each paragraph is a list of styled runs.
+  Lines are broken greedily after white space or hyphens; a word that does not fit on a line by itself is broken
+  between characters. A newline character forces a line break; a paragraph that ends with a newline has a final
+  empty line. Trailing white space does not contribute to the width of a line. Lines are aligned at the left inset.
+  <p>
+  The layout is incremental: the line breaks of each paragraph are retained until the paragraph, the width, or the
+  insets change. When a paragraph is edited, only that paragraph is broken into lines again; the following
+  paragraphs are just moved vertically. Layout is performed on demand.
+  <p>
+  This class is not thread safe.
+*/
+
+public final class TextLayout
+{
+    /**
+      Create an empty text layout with zero width and no insets.
+      @param metrics The source of text measurements.
+      @param defaultFont The font that determines the height of an empty paragraph with no runs.
+    */
+
+    public static @NotNull TextLayout create(@NotNull TextMetrics metrics, @NotNull FontDescription defaultFont)
+    {
+        return new TextLayout(metrics, defaultFont);
+    }
+
+    private final @NotNull TextMetrics metrics;
+    private final @NotNull FontDescription defaultFont;
+    private final @NotNull List<Paragraph> paragraphs = new ArrayList<>();
+    private int width;
+    private @NotNull InsetDescription insets = InsetDescription.zero();
+    private int validTopCount;  // the number of leading paragraphs whose position is valid
+    private long reusedCount;
+    private long layoutCount;
+
+    /**
+      A paragraph and its line breaks, if they are valid.
+    */
+
+    private static final class Paragraph
+    {
+        final @NotNull List<StyledRun> runs;
+        @Nullable int[] lineStarts;
+        @Nullable int[] lineWidths;
+        @Nullable int[] lineHeights;
+        int lineCount;
+        int height;
+        int top;
+
+        Paragraph(@NotNull List<StyledRun> runs)
+        {
+            this.runs = runs;
+        }
+
+        boolean isValid()
+        {
+            return lineStarts != null;
+        }
+
+        void invalidate()
+        {
+            lineStarts = null;
+            lineWidths = null;
+            lineHeights = null;
+        }
+    }
+
+    private TextLayout(@NotNull TextMetrics metrics, @NotNull FontDescription defaultFont)
+    {
+        this.metrics = metrics;
+        this.defaultFont = defaultFont;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+      Set the width of the layout, including the insets.
+      @throws IllegalArgumentException if {@code width} is negative.
+    */
+
+    public void setWidth(int width)
+      throws IllegalArgumentException
+    {
+        if (width < 0) {
+            throw new IllegalArgumentException("Invalid width: " + width);
+        }
+        if (width != this.width) {
+            this.width = width;
+            invalidateAll();
+        }
+    }
+
+    public @NotNull InsetDescription getInsets()
+    {
+        return insets;
+    }
+
+    public void setInsets(@NotNull InsetDescription insets)
+    {
+        if (!insets.equals(this.insets)) {
+            boolean isHorizontalChange = insets.getWidth() != this.insets.getWidth();
+            this.insets = insets;
+            if (isHorizontalChange) {
+                invalidateAll();
+            } else {
+                validTopCount = 0;
+            }
+        }
+    }
+
+    public int getParagraphCount()
+    {
+        return paragraphs.size();
+    }
+
+    public @NotNull List<StyledRun> getParagraph(int index)
+      throws IndexOutOfBoundsException
+    {
+        return paragraphs.get(index).runs;
+    }
+
+    /**
+      Replace all of the paragraphs. The existing layout of a leading or trailing sequence of unchanged paragraphs is
+      retained.
+      @param text The paragraphs, each a list of styled runs.
+    */
+
+    public void setParagraphs(@NotNull List<List<StyledRun>> text)
+    {
+        int oldCount = paragraphs.size();
+        int newCount = text.size();
+
+        int prefix = 0;
+        while (prefix < oldCount && prefix < newCount && paragraphs.get(prefix).runs.equals(text.get(prefix))) {
+            prefix++;
+        }
+
+        int suffix = 0;
+        while (suffix < oldCount - prefix && suffix < newCount - prefix
+          && paragraphs.get(oldCount - 1 - suffix).runs.equals(text.get(newCount - 1 - suffix))) {
+            suffix++;
+        }
+
+        List<Paragraph> replacements = new ArrayList<>(newCount - prefix - suffix);
+        for (int i = prefix; i < newCount - suffix; i++) {
+            replacements.add(new Paragraph(copy(text.get(i))));
+        }
+        List<Paragraph> changed = paragraphs.subList(prefix, oldCount - suffix);
+        changed.clear();
+        changed.addAll(replacements);
+        validTopCount = Math.min(validTopCount, prefix);
+    }
+
+    /**
+      Replace one paragraph.
+      @throws IndexOutOfBoundsException if {@code index} is not a valid paragraph index.
+    */
+
+    public void replaceParagraph(int index, @NotNull List<StyledRun> runs)
+      throws IndexOutOfBoundsException
+    {
+        Paragraph p = paragraphs.get(index);
+        if (!p.runs.equals(runs)) {
+            paragraphs.set(index, new Paragraph(copy(runs)));
+            validTopCount = Math.min(validTopCount, index);
+        }
+    }
+
+    /**
+      Insert a paragraph.
+      @throws IndexOutOfBoundsException if {@code index} is negative or greater than the number of paragraphs.
+    */
+
+    public void insertParagraph(int index, @NotNull List<StyledRun> runs)
+      throws IndexOutOfBoundsException
+    {
+        paragraphs.add(index, new Paragraph(copy(runs)));
+        validTopCount = Math.min(validTopCount, index);
+    }
+
+    /**
+      Remove a paragraph.
+      @throws IndexOutOfBoundsException if {@code index} is not a valid paragraph index.
+    */
+
+    public void removeParagraph(int index)
+      throws IndexOutOfBoundsException
+    {
+        paragraphs.remove(index);
+        validTopCount = Math.min(validTopCount, index);
+    }
+
+    /**
+      Return the height of the layout, including the insets.
+    */
+
+    public int getHeight()
+    {
+        int count = paragraphs.size();
+        if (count == 0) {
+            return insets.getHeight();
+        }
+        Paragraph last = validate(count - 1);
+        return last.top + last.height + insets.getBottom();
+    }
+
+    /**
+      Return the bounds of a paragraph. The width of the bounds is the width available for lines.
+      @throws IndexOutOfBoundsException if {@code index} is not a valid paragraph index.
+    */
+
+    public @NotNull Bounds getParagraphBounds(int index)
+      throws IndexOutOfBoundsException
+    {
+        checkParagraphIndex(index);
+        Paragraph p = validate(index);
+        return Bounds.create(insets.getLeft(), p.top, getAvailableWidth(), p.height);
+    }
+
+    /**
+      Return the number of lines in a paragraph.
+      @throws IndexOutOfBoundsException if {@code index} is not a valid paragraph index.
+    */
+
+    public int getLineCount(int index)
+      throws IndexOutOfBoundsException
+    {
+        checkParagraphIndex(index);
+        return validate(index).lineCount;
+    }
+
+    /**
+      Return the character offsets within a paragraph at which its lines start.
+      @throws IndexOutOfBoundsException if {@code index} is not a valid paragraph index.
+    */
+
+    public @NotNull int[] getLineOffsets(int index)
+      throws IndexOutOfBoundsException
+    {
+        checkParagraphIndex(index);
+        Paragraph p = validate(index);
+        assert p.lineStarts != null;
+        return Arrays.copyOf(p.lineStarts, p.lineCount);
+    }
+
+    /**
+      Return the bounds of the lines of a paragraph.
+      @throws IndexOutOfBoundsException if {@code index} is not a valid paragraph index.
+    */
+
+    public @NotNull List<Bounds> getLineBounds(int index)
+      throws IndexOutOfBoundsException
+    {
+        checkParagraphIndex(index);
+        List<Bounds> result = new ArrayList<>();
+        addLineBounds(validate(index), result);
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+      Return the bounds of all lines, in order.
+    */
+
+    public @NotNull List<Bounds> getLineBounds()
+    {
+        List<Bounds> result = new ArrayList<>();
+        int count = paragraphs.size();
+        if (count > 0) {
+            validate(count - 1);
+            for (Paragraph p : paragraphs) {
+                addLineBounds(p, result);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+      Return statistics on the reuse of paragraph line breaks. A hit is a paragraph whose existing line breaks were
+      used; a miss is a paragraph that was broken into lines.
+    */
+
+    public @NotNull CacheStatistics getStatistics()
+    {
+        return CacheStatistics.create(reusedCount, layoutCount);
+    }
+
+    private void addLineBounds(@NotNull Paragraph p, @NotNull List<Bounds> result)
+    {
+        assert p.lineWidths != null && p.lineHeights != null;
+        int x = insets.getLeft();
+        int y = p.top;
+        for (int i = 0; i < p.lineCount; i++) {
+            int h = p.lineHeights[i];
+            result.add(Bounds.create(x, y, p.lineWidths[i], h));
+            y += h;
+        }
+    }
+
+    private void checkParagraphIndex(int index)
+      throws IndexOutOfBoundsException
+    {
+        if (index < 0 || index >= paragraphs.size()) {
+            throw new IndexOutOfBoundsException("Invalid paragraph index: " + index);
+        }
+    }
+
+    private void invalidateAll()
+    {
+        for (Paragraph p : paragraphs) {
+            p.invalidate();
+        }
+        validTopCount = 0;
+    }
+
+    /**
+      Ensure that the paragraphs up to and including the specified paragraph have valid line breaks and positions.
+      @return the specified paragraph.
+    */
+
+    private @NotNull Paragraph validate(int index)
+    {
+        int y = insets.getTop();
+        if (validTopCount > 0) {
+            Paragraph previous = paragraphs.get(validTopCount - 1);
+            y = previous.top + previous.height;
+        }
+        for (int i = validTopCount; i <= index; i++) {
+            Paragraph p = paragraphs.get(i);
+            if (p.isValid()) {
+                reusedCount++;
+            } else {
+                layoutCount++;
+                breakLines(p);
+            }
+            p.top = y;
+            y += p.height;
+        }
+        validTopCount = Math.max(validTopCount, index + 1);
+        return paragraphs.get(index);
+    }
+
+    private int getAvailableWidth()
+    {
+        return Math.max(0, width - insets.getWidth());
+    }
+
+    private void breakLines(@NotNull Paragraph p)
+    {
+        List<StyledRun> runs = p.runs;
+        int runCount = runs.size();
+
+        // Collect the text and the character advances
+
+        int[] runStarts = new int[runCount + 1];
+        StringBuilder sb = new StringBuilder();
+        for (int r = 0; r < runCount; r++) {
+            runStarts[r] = sb.length();
+            sb.append(runs.get(r).getText());
+        }
+        runStarts[runCount] = sb.length();
+        int n = sb.length();
+        float[] advances = new float[n];
+        for (int r = 0; r < runCount; r++) {
+            FontDescription font = runs.get(r).getFont();
+            int i = runStarts[r];
+            int end = runStarts[r + 1];
+            while (i < end) {
+                int codePoint = Character.codePointAt(sb, i);
+                advances[i] = metrics.getAdvance(font, codePoint);  // a following low surrogate has no advance
+                i += Character.charCount(codePoint);
+            }
+        }
+
+        // Break greedily
+
+        float available = getAvailableWidth();
+        int[] starts = new int[4];
+        int[] widths = new int[4];
+        int[] heights = new int[4];
+        int lineCount = 0;
+        int height = 0;
+        int start = 0;
+        int firstRun = 0;  // lines and runs are both in text order, so the runs of a line are found incrementally
+        boolean isNewline;
+        do {
+            float w = 0;
+            int lastBreak = -1;
+            int end = n;
+            int i = start;
+            while (i < n) {
+                char c = sb.charAt(i);
+                if (c == '\n') {
+                    end = i + 1;
+                    break;
+                }
+                if (c == ' ' || c == '\t') {
+                    w += advances[i];
+                    lastBreak = ++i;
+                    continue;
+                }
+                if (w + advances[i] > available && i > start && !Character.isLowSurrogate(c)) {
+                    end = lastBreak > start ? lastBreak : i;
+                    break;
+                }
+                w += advances[i];
+                i++;
+                if (c == '-') {
+                    lastBreak = i;
+                }
+            }
+
+            if (lineCount == starts.length) {
+                starts = Arrays.copyOf(starts, lineCount * 2);
+                widths = Arrays.copyOf(widths, lineCount * 2);
+                heights = Arrays.copyOf(heights, lineCount * 2);
+            }
+            while (firstRun < runCount && runStarts[firstRun + 1] < start) {
+                firstRun++;
+            }
+            int lineHeight = getLineHeight(runs, runStarts, firstRun, start, end);
+            starts[lineCount] = start;
+            widths[lineCount] = getLineWidth(sb, advances, start, end);
+            heights[lineCount] = lineHeight;
+            lineCount++;
+            height += lineHeight;
+            isNewline = end > start && sb.charAt(end - 1) == '\n';
+            start = end;
+        } while (start < n || isNewline);
+
+        p.lineStarts = starts;
+        p.lineWidths = widths;
+        p.lineHeights = heights;
+        p.lineCount = lineCount;
+        p.height = height;
+    }
+
+    private static int getLineWidth(@NotNull CharSequence text, @NotNull float[] advances, int start, int end)
+    {
+        while (end > start) {
+            char c = text.charAt(end - 1);
+            if (c != ' ' && c != '\t' && c != '\n') {
+                break;
+            }
+            end--;
+        }
+        float w = 0;
+        for (int i = start; i < end; i++) {
+            w += advances[i];
+        }
+        return (int) Math.ceil(w);
+    }
+
+    /**
+      Return the height of a line, based on the metrics of the fonts of the runs that contribute to the line.
+      @param firstRun The index of a run that does not follow the first run that contributes to the line.
+    */
+
+    private int getLineHeight(@NotNull List<StyledRun> runs, @NotNull int[] runStarts, int firstRun, int start, int end)
+    {
+        float ascent = 0;
+        float descent = 0;
+        float leading = 0;
+        boolean found = false;
+        for (int r = firstRun; r < runs.size() && runStarts[r] <= end; r++) {
+            int runStart = runStarts[r];
+            int runEnd = runStarts[r + 1];
+            boolean isContributing = runStart < end && runEnd > start
+              || runStart == runEnd && runStart >= start && runStart <= end && start == end;
+            if (isContributing) {
+                FontDescription font = runs.get(r).getFont();
+                ascent = Math.max(ascent, metrics.getAscent(font));
+                descent = Math.max(descent, metrics.getDescent(font));
+                leading = Math.max(leading, metrics.getLeading(font));
+                found = true;
+            }
+        }
+        if (!found) {
+            FontDescription font = runs.isEmpty() ? defaultFont : runs.get(runs.size() - 1).getFont();
+            ascent = metrics.getAscent(font);
+            descent = metrics.getDescent(font);
+            leading = metrics.getLeading(font);
+        }
+        return (int) Math.ceil(ascent + descent + leading);
+    }
+
+    private static @NotNull List<StyledRun> copy(@NotNull List<StyledRun> runs)
+    {
+        return Collections.unmodifiableList(new ArrayList<>(runs));
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        return "TextLayout{" +
+                 "paragraphs=" + paragraphs.size() +
+                 ", width=" + width +
+                 ", insets=" + insets +
+                 '}';
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A source of text measurements. Implementations may be based on a platform text system or on font data read
+  directly. Measurements are in the same units as the font size.
+  <p>
+  Implementations must be pure functions of their arguments, so that their results can be cached.
+
+  @see TextMetrics
+*/
+
+public interface TextMeasurer
+{
+    /**
+      Return a measurer that approximates the metrics of a typical proportional font using character classes. This
+      measurer does not depend on any installed fonts.
+    */
+
+    static @NotNull TextMeasurer approximate()
+    {
+        return ApproximateTextMeasurer.INSTANCE;
+    }
+
+    /**
+      Return the advance width of a character.
+      @param font The font.
+      @param codePoint The Unicode code point of the character.
+    */
+
+    float getAdvance(@NotNull FontDescription font, int codePoint);
+
+    /**
+      Return the width of a sequence of characters. The default implementation returns the sum of the character
+      advances; implementations that support kerning or ligatures should override this method and
+      {@link #isWidthAdditive}.
+      @param font The font.
+      @param text The characters.
+      @param start The index of the first character to measure.
+      @param end The index after the last character to measure.
+    */
+
+    default float getWidth(@NotNull FontDescription font, @NotNull CharSequence text, int start, int end)
+    {
+        float width = 0;
+        int index = start;
+        while (index < end) {
+            int codePoint = Character.codePointAt(text, index);
+            width += getAdvance(font, codePoint);
+            index += Character.charCount(codePoint);
+        }
+        return width;
+    }
+
+    /**
+      Indicate whether the width of a sequence of characters is always the sum of the character advances. If so,
+      {@link TextMetrics} computes widths from cached advances instead of calling {@link #getWidth}. The default
+      implementation returns true; implementations that override {@link #getWidth} to support kerning or ligatures
+      should return false.
+    */
+
+    default boolean isWidthAdditive()
+    {
+        return true;
+    }
+
+    /**
+      Return the distance from the baseline to the top of the tallest characters of a font.
+    */
+
+    float getAscent(@NotNull FontDescription font);
+
+    /**
+      Return the distance from the baseline to the bottom of the lowest characters of a font.
+    */
+
+    float getDescent(@NotNull FontDescription font);
+
+    /**
+      Return the recommended space between lines of a font.
+    */
+
+    float getLeading(@NotNull FontDescription font);
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A caching text measurement service. Measurements are obtained from a {@link TextMeasurer} and cached per font: the
+  advances of the Latin-1 characters are stored in an array, and the widths of recently measured strings are retained
+  in a least recently used cache.
+  <p>
+  This class is not thread safe.
+*/
+
+public final class TextMetrics
+{
+    /**
+      Create a text measurement service with default cache capacities.
+      @param measurer The source of the measurements.
+    */
+
+    public static @NotNull TextMetrics create(@NotNull TextMeasurer measurer)
+    {
+        return new TextMetrics(measurer, 32, 1024);
+    }
+
+    /**
+      Create a text measurement service.
+      @param measurer The source of the measurements.
+      @param fontCapacity The maximum number of fonts whose measurements are cached.
+      @param stringCapacity The maximum number of string widths cached for each font.
+      @throws IllegalArgumentException if {@code fontCapacity} or {@code stringCapacity} is not positive.
+    */
+
+    public static @NotNull TextMetrics create(@NotNull TextMeasurer measurer, int fontCapacity, int stringCapacity)
+      throws IllegalArgumentException
+    {
+        if (fontCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid font capacity: " + fontCapacity);
+        }
+        if (stringCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid string capacity: " + stringCapacity);
+        }
+        return new TextMetrics(measurer, fontCapacity, stringCapacity);
+    }
+
+    // The number of characters whose advances are stored in an array
+    private static final int ADVANCE_LIMIT = 256;
+
+    private final @NotNull TextMeasurer measurer;
+    private final int stringCapacity;
+    private final @NotNull LruMap<FontDescription,FontMetrics> fonts;
+    private @Nullable FontMetrics lastFont;  // avoids a map lookup when measuring repeatedly in one font
+    private long hits;
+    private long misses;
+
+    /**
+      The cached measurements of one font.
+    */
+
+    private final class FontMetrics
+    {
+        final @NotNull FontDescription font;
+        final @NotNull float[] advances;
+        final @NotNull LruMap<String,Float> widths;
+        final float ascent;
+        final float descent;
+        final float leading;
+
+        FontMetrics(@NotNull FontDescription font)
+        {
+            this.font = font;
+            this.advances = new float[ADVANCE_LIMIT];
+            for (int i = 0; i < ADVANCE_LIMIT; i++) {
+                advances[i] = measurer.getAdvance(font, i);
+            }
+            this.widths = new LruMap<>(stringCapacity);
+            this.ascent = measurer.getAscent(font);
+            this.descent = measurer.getDescent(font);
+            this.leading = measurer.getLeading(font);
+        }
+    }
+
+    private static final class LruMap<K,V>
+      extends LinkedHashMap<K,V>
+    {
+        private final int capacity;
+
+        LruMap(int capacity)
+        {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(@NotNull Map.Entry<K,V> eldest)
+        {
+            return size() > capacity;
+        }
+    }
+
+    private TextMetrics(@NotNull TextMeasurer measurer, int fontCapacity, int stringCapacity)
+    {
+        this.measurer = measurer;
+        this.stringCapacity = stringCapacity;
+        this.fonts = new LruMap<>(fontCapacity);
+    }
+
+    public @NotNull TextMeasurer getMeasurer()
+    {
+        return measurer;
+    }
+
+    /**
+      Return the advance width of a character.
+      @param font The font.
+      @param codePoint The Unicode code point of the character.
+    */
+
+    public float getAdvance(@NotNull FontDescription font, int codePoint)
+    {
+        if (codePoint >= 0 && codePoint < ADVANCE_LIMIT) {
+            return getFontMetrics(font).advances[codePoint];
+        }
+        return measurer.getAdvance(font, codePoint);
+    }
+
+    /**
+      Return the width of a string.
+      @param font The font.
+      @param text The string.
+    */
+
+    public float getWidth(@NotNull FontDescription font, @NotNull String text)
+    {
+        FontMetrics fm = getFontMetrics(font);
+        Float width = fm.widths.get(text);
+        if (width != null) {
+            hits++;
+            return width;
+        }
+        misses++;
+        float w = measure(fm, text, 0, text.length());
+        fm.widths.put(text, w);
+        return w;
+    }
+
+    /**
+      Return the width of a sequence of characters. The width is cached only if the sequence is an entire string;
+      otherwise, it is computed from the cached character advances when the measurer permits.
+      @param font The font.
+      @param text The characters.
+      @param start The index of the first character to measure.
+      @param end The index after the last character to measure.
+      @throws IndexOutOfBoundsException if {@code start} or {@code end} is not a valid index.
+    */
+
+    public float getWidth(@NotNull FontDescription font, @NotNull CharSequence text, int start, int end)
+      throws IndexOutOfBoundsException
+    {
+        if (start < 0 || end > text.length() || start > end) {
+            throw new IndexOutOfBoundsException("Invalid range: " + start + "-" + end);
+        }
+        if (start == 0 && end == text.length() && text instanceof String) {
+            return getWidth(font, (String) text);
+        }
+        return measure(getFontMetrics(font), text, start, end);
+    }
+
+    private float measure(@NotNull FontMetrics fm, @NotNull CharSequence text, int start, int end)
+    {
+        if (!measurer.isWidthAdditive()) {
+            return measurer.getWidth(fm.font, text, start, end);
+        }
+        float width = 0;
+        int index = start;
+        while (index < end) {
+            char c = text.charAt(index);
+            if (c < ADVANCE_LIMIT) {
+                width += fm.advances[c];
+                index++;
+            } else {
+                int codePoint = Character.codePointAt(text, index);
+                width += measurer.getAdvance(fm.font, codePoint);
+                index += Character.charCount(codePoint);
+            }
+        }
+        return width;
+    }
+
+    /**
+      Return the distance from the baseline to the top of the tallest characters of a font.
+    */
+
+    public float getAscent(@NotNull FontDescription font)
+    {
+        return getFontMetrics(font).ascent;
+    }
+
+    /**
+      Return the distance from the baseline to the bottom of the lowest characters of a font.
+    */
+
+    public float getDescent(@NotNull FontDescription font)
+    {
+        return getFontMetrics(font).descent;
+    }
+
+    /**
+      Return the recommended space between lines of a font.
+    */
+
+    public float getLeading(@NotNull FontDescription font)
+    {
+        return getFontMetrics(font).leading;
+    }
+
+    /**
+      Return the distance between the baselines of consecutive lines of a font.
+    */
+
+    public float getLineHeight(@NotNull FontDescription font)
+    {
+        FontMetrics fm = getFontMetrics(font);
+        return fm.ascent + fm.descent + fm.leading;
+    }
+
+    /**
+      Return statistics on the use of cached string widths by {@link #getWidth}.
+    */
+
+    public @NotNull CacheStatistics getStatistics()
+    {
+        return CacheStatistics.create(hits, misses);
+    }
+
+    /**
+      Discard all cached measurements.
+    */
+
+    public void clear()
+    {
+        fonts.clear();
+        lastFont = null;
+    }
+
+    private @NotNull FontMetrics getFontMetrics(@NotNull FontDescription font)
+    {
+        FontMetrics fm = lastFont;
+        if (fm != null && fm.font.equals(font)) {
+            return fm;
+        }
+        fm = fonts.get(font);
+        if (fm == null) {
+            fm = new FontMetrics(font);
+            fonts.put(font, fm);
+        }
+        lastFont = fm;
+        return fm;
+    }
+}
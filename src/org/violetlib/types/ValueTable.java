@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.types;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A fixed size table of canonical instances of an immutable value class, indexed by an integer computed from the
+  value. Entries are created on demand. The table is safe for concurrent use without locking, because the values have
+  only final fields: a race to install an entry can only result in an equal instance being replaced, which is harmless.
+  <p>
+  Recording hits and misses updates shared counters, which is not free. Tables that canonicalize values in frequently
+  called factory methods therefore record statistics only if the system property
+  {@value #STATISTICS_PROPERTY} is {@code true}.
+*/
+
+final class ValueTable<T>
+{
+    private final @Nullable Object[] entries;
+    private final boolean isRecording;
+    private final @NotNull LongAdder hits = new LongAdder();
+    private final @NotNull LongAdder misses = new LongAdder();
+
+    static final String STATISTICS_PROPERTY = "org.violetlib.types.recordCacheStatistics";
+
+    // Read once, so that the check costs nothing in compiled code
+    private static final boolean IS_RECORDING_ENABLED = Boolean.getBoolean(STATISTICS_PROPERTY);
+
+    /**
+      Create a table that records statistics only if enabled by the system property.
+    */
+
+    ValueTable(int capacity)
+    {
+        this(capacity, IS_RECORDING_ENABLED);
+    }
+
+    /**
+      Create a table.
+      @param capacity The number of entries.
+      @param isRecording True to record hits and misses.
+    */
+
+    ValueTable(int capacity, boolean isRecording)
+    {
+        this.entries = new Object[capacity];
+        this.isRecording = isRecording;
+    }
+
+    /**
+      Return the canonical instance at the specified index, if it has been installed.
+      @return the canonical instance, or null if none has been installed, in which case a miss is recorded.
+    */
+
+    @Nullable T get(int index)
+    {
+        @SuppressWarnings("unchecked")
+        T value = (T) entries[index];
+        if (isRecording) {
+            if (value != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+            }
+        }
+        return value;
+    }
+
+    /**
+      Return the entry at the specified index, without recording a hit or miss. This method supports tables in which
+      an index may be shared by multiple values: the caller must check that the entry is the desired value and record
+      the outcome.
+      @return the entry, or null if none has been installed.
+    */
+
+    @Nullable T peek(int index)
+    {
+        @SuppressWarnings("unchecked")
+        T value = (T) entries[index];
+        return value;
+    }
+
+    void recordHit()
+    {
+        if (isRecording) {
+            hits.increment();
+        }
+    }
+
+    /**
+      Install a canonical instance at the specified index.
+      @return the installed instance.
+    */
+
+    @NotNull T install(int index, @NotNull T value)
+    {
+        entries[index] = value;
+        return value;
+    }
+
+    /**
+      Record a request for a value that is not the installed entry.
+    */
+
+    void recordMiss()
+    {
+        if (isRecording) {
+            misses.increment();
+        }
+    }
+
+    @NotNull CacheStatistics getStatistics()
+    {
+        return CacheStatistics.create(hits.sum(), misses.sum());
+    }
+}